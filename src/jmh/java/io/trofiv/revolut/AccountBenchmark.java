@@ -0,0 +1,50 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import io.trofiv.revolut.exception.GenericException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link Account#getAccountById(String)} for uniformly chosen accounts with and without account cache
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AccountBenchmark {
+    private static final int ACCOUNTS = 1000;
+
+    @Benchmark
+    public Account getAccountById(final Accounts accounts) throws GenericException {
+        return Account.getAccountById(BenchmarkAccounts.randomId(ACCOUNTS));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+        @Param({"true", "false"})
+        String cache;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GenericException {
+            Guice.createInjector(new BenchmarkModule(ImmutableMap.of("accounts.cache.enabled", cache)));
+            BenchmarkAccounts.reset(ACCOUNTS);
+        }
+    }
+}
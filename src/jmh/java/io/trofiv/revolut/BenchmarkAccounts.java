@@ -0,0 +1,81 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Accounts populated for benchmarks. Every account has enough money to never run out during a benchmark
+ */
+@SuppressWarnings({"UtilityClassCanBeEnum", "SqlNoDataSourceInspection", "SqlResolve"})
+final class BenchmarkAccounts {
+    static final long INITIAL_AMOUNT = 1_000_000_000_00L;
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private BenchmarkAccounts() {
+    }
+
+    /**
+     * Migrates schema, clears transfers history and recreates accounts table with accounts having ids
+     * from {@code 0} to {@code count - 1}
+     *
+     * @param count number of accounts
+     * @throws GenericException if any database-related error has occurred
+     */
+    static void reset(final int count) throws GenericException {
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, false);
+            SchemaMigrator.migrate(conn);
+            try (final Statement statement = conn.createStatement()) {
+                statement.execute("TRUNCATE TABLE TRANSFERS");
+                statement.execute("DROP TABLE IF EXISTS ACCOUNTS");
+                statement.execute("CREATE TABLE ACCOUNTS(ID VARCHAR(255) NOT NULL PRIMARY KEY, AMOUNT BIGINT, "
+                        + "VERSION BIGINT DEFAULT 0 NOT NULL)");
+            }
+            try (final PreparedStatement insert = conn.prepareStatement("INSERT INTO ACCOUNTS(ID, AMOUNT) VALUES (?, ?)")) {
+                for (int i = 0; i < count; i++) {
+                    insert.setString(1, id(i));
+                    insert.setLong(2, INITIAL_AMOUNT);
+                    insert.addBatch();
+                    if (i % INSERT_BATCH_SIZE == INSERT_BATCH_SIZE - 1) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        AccountCache.invalidateAll();
+    }
+
+    static String id(final int index) {
+        return Integer.toString(index);
+    }
+
+    /**
+     * @return id of a uniformly chosen account
+     */
+    static String randomId(final int count) {
+        return id(ThreadLocalRandom.current().nextInt(count));
+    }
+
+    /**
+     * @return transfer of a minimal amount between two distinct uniformly chosen accounts
+     */
+    static Transfer randomTransfer(final int count) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int source = random.nextInt(count);
+        final int target = (source + 1 + random.nextInt(count - 1)) % count;
+        return new Transfer(id(source), id(target), 1);
+    }
+}
@@ -0,0 +1,41 @@
+package io.trofiv.revolut;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Benchmarks module, reads {@code benchmark.properties} from classpath and overrides them with the specified ones
+ */
+public class BenchmarkModule extends AbstractModule {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final Map<String, String> overrides;
+
+    BenchmarkModule(final Map<String, String> overrides) {
+        this.overrides = overrides;
+    }
+
+    @Override
+    protected void configure() {
+        final Properties properties = new Properties();
+        try (final InputStream is = BenchmarkModule.class.getClassLoader().getResourceAsStream("benchmark.properties")) {
+            properties.load(is);
+        } catch (IOException ex) {
+            LOGGER.error("Can't initialize benchmark properties", ex);
+        }
+        properties.putAll(overrides);
+        Names.bindProperties(binder(), properties);
+        bind(LedgerEngine.class).to(MainModule.getLedgerEngineClass(properties.getProperty("ledger.engine", "jdbc")));
+        requestStaticInjection(DatabaseCommons.class);
+        requestStaticInjection(AccountCache.class);
+        requestStaticInjection(HotAccounts.class);
+    }
+}
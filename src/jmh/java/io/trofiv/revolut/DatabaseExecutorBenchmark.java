@@ -0,0 +1,82 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to serve a burst of concurrent requests reading an account from the database with {@link DatabaseExecutor}
+ * running them on platform or virtual threads. Every request holds its connection for the specified stall time,
+ * which stands for a slow database. {@code virtual} mode requires Java 21
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseExecutorBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int POOL_SIZE = 10;
+
+    @Benchmark
+    public int burst(final Executor executor) throws Exception {
+        final CompletableFuture<?>[] results = new CompletableFuture<?>[executor.requests];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = executor.executor.supply(() -> DatabaseCommons.executeWithConnection(conn -> {
+                final Account account = Account.getAccountById(BenchmarkAccounts.randomId(ACCOUNTS), conn);
+                if (executor.stallMicros > 0) {
+                    TimeUnit.MICROSECONDS.sleep(executor.stallMicros);
+                }
+                return account;
+            }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT));
+        }
+        CompletableFuture.allOf(results).join();
+        return results.length;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Executor {
+        @Param({"platform", "virtual"})
+        String mode;
+
+        @Param({"10000"})
+        int requests;
+
+        @Param({"0", "100"})
+        int stallMicros;
+
+        private DatabaseExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GenericException {
+            Guice.createInjector(new BenchmarkModule(ImmutableMap.of(
+                    "db.pool.maxSize", String.valueOf(POOL_SIZE),
+                    "db.pool.minIdle", String.valueOf(POOL_SIZE))));
+            BenchmarkAccounts.reset(ACCOUNTS);
+            executor = new DatabaseExecutor(POOL_SIZE, requests, mode);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.stop();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.trofiv.revolut.exception.GenericException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full HTTP round trips against an embedded {@link Application} over keep-alive connections
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class HttpBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int BUFFER_SIZE = 4096;
+
+    @Benchmark
+    public int getAccount(final Server server) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection)
+                new URL(server.url + "/accounts/" + BenchmarkAccounts.randomId(ACCOUNTS)).openConnection();
+        return exchange(connection);
+    }
+
+    @Benchmark
+    public int postTransfer(final Server server) throws IOException {
+        final Transfer transfer = BenchmarkAccounts.randomTransfer(ACCOUNTS);
+        final byte[] body = ("{\"sourceAccountId\": \"" + transfer.getSourceAccountId()
+                + "\", \"targetAccountId\": \"" + transfer.getTargetAccountId()
+                + "\", \"amount\": \"0.01\"}").getBytes(StandardCharsets.UTF_8);
+        final HttpURLConnection connection = (HttpURLConnection) new URL(server.url + "/transfers").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (final OutputStream os = connection.getOutputStream()) {
+            os.write(body);
+        }
+        return exchange(connection);
+    }
+
+    /**
+     * Reads the whole response, so the connection is returned to the keep-alive cache
+     */
+    private static int exchange(final HttpURLConnection connection) throws IOException {
+        final int status = connection.getResponseCode();
+        final InputStream is = status < HttpURLConnection.HTTP_BAD_REQUEST
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+        if (is != null) {
+            try (final InputStream body = is) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                //noinspection StatementWithEmptyBody
+                while (body.read(buffer) >= 0) {
+                }
+            }
+        }
+        if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            throw new IOException("Unexpected response status " + status);
+        }
+        return status;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"jdbc", "group-commit"})
+        String engineName;
+
+        private Application application;
+        private String url;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GenericException {
+            final Injector injector = Guice.createInjector(
+                    new BenchmarkModule(ImmutableMap.of("ledger.engine", engineName)));
+            BenchmarkAccounts.reset(ACCOUNTS);
+            application = injector.getInstance(Application.class);
+            application.start();
+            url = "http://localhost:" + application.getPort();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            application.stop();
+        }
+    }
+}
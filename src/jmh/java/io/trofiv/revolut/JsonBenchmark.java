@@ -0,0 +1,75 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of request and response bodies the same way {@link Application} does it: bodies are read
+ * from request bytes and written to a response stream with readers and writers built once. Run with
+ * {@code -prof gc} to see allocation per operation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectReader TRANSFER_READER = JSON.readerFor(Transfer.class);
+    private static final ObjectReader ACCOUNT_READER = JSON.readerFor(Account.class);
+    private static final ObjectWriter TRANSFER_WRITER = JSON.writerFor(Transfer.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    private static final ObjectWriter ACCOUNT_WRITER = JSON.writerFor(Account.class)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+    private final byte[] transferJson = ("{\"sourceAccountId\": \"12345\", \"targetAccountId\": \"67890\", "
+            + "\"amount\": \"100.50\"}").getBytes(StandardCharsets.UTF_8);
+    private final Transfer transfer = new Transfer("12345", "67890", 10050);
+    private final byte[] accountJson = "{\"id\": \"12345\", \"amount\": 100.50}".getBytes(StandardCharsets.UTF_8);
+    private final Account account = new Account("12345", 10050);
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream(256);
+
+    @Benchmark
+    public Transfer readTransfer() throws IOException {
+        return TRANSFER_READER.readValue(new ByteArrayInputStream(transferJson));
+    }
+
+    @Benchmark
+    public int writeTransfer() throws IOException {
+        response.reset();
+        TRANSFER_WRITER.writeValue(response, transfer);
+        return response.size();
+    }
+
+    @Benchmark
+    public Account readAccount() throws IOException {
+        return ACCOUNT_READER.readValue(new ByteArrayInputStream(accountJson));
+    }
+
+    @Benchmark
+    public int writeAccount() throws IOException {
+        response.reset();
+        ACCOUNT_WRITER.writeValue(response, account);
+        return response.size();
+    }
+}
@@ -0,0 +1,138 @@
+package io.trofiv.revolut;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Money} minor units with the former {@link BigDecimal} strings representation of amounts,
+ * both for transfer arithmetic alone and for the amount read-modify-write round trip through H2.
+ * Run with {@code -prof gc} to compare allocation rates
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class MoneyBenchmark {
+
+    @Benchmark
+    public void bigDecimalTransfer(final Amounts amounts, final Blackhole blackhole) {
+        final BigDecimal amount = new BigDecimal(amounts.requestAmount);
+        final BigDecimal source = new BigDecimal(amounts.storedSource);
+        final BigDecimal target = new BigDecimal(amounts.storedTarget);
+        final BigDecimal credited = source.subtract(amount);
+        if (credited.compareTo(BigDecimal.ZERO) >= 0) {
+            blackhole.consume(credited.toPlainString());
+            blackhole.consume(target.add(amount).toPlainString());
+        }
+    }
+
+    @Benchmark
+    public void minorUnitsTransfer(final Amounts amounts, final Blackhole blackhole) {
+        final long amount = Money.parse(amounts.requestAmount);
+        if (amounts.storedSourceMinorUnits >= amount) {
+            blackhole.consume(amounts.storedSourceMinorUnits - amount);
+            blackhole.consume(amounts.storedTargetMinorUnits + amount);
+        }
+    }
+
+    @Benchmark
+    public String bigDecimalFormat(final Amounts amounts) {
+        return new BigDecimal(amounts.storedSource).toPlainString();
+    }
+
+    @Benchmark
+    public String minorUnitsFormat(final Amounts amounts) {
+        return Money.toPlainString(amounts.storedSourceMinorUnits);
+    }
+
+    @Benchmark
+    public void bigDecimalRoundTrip(final Database database) throws SQLException {
+        database.selectVarchar.setString(1, Database.ID);
+        final BigDecimal amount;
+        try (final ResultSet rs = database.selectVarchar.executeQuery()) {
+            rs.next();
+            amount = new BigDecimal(rs.getString(1));
+        }
+        database.updateVarchar.setString(1, amount.add(BigDecimal.ONE).toPlainString());
+        database.updateVarchar.setString(2, Database.ID);
+        database.updateVarchar.executeUpdate();
+    }
+
+    @Benchmark
+    public void minorUnitsRoundTrip(final Database database) throws SQLException {
+        database.selectBigint.setString(1, Database.ID);
+        final long amount;
+        try (final ResultSet rs = database.selectBigint.executeQuery()) {
+            rs.next();
+            amount = rs.getLong(1);
+        }
+        database.updateBigint.setLong(1, amount + 1);
+        database.updateBigint.setString(2, Database.ID);
+        database.updateBigint.executeUpdate();
+    }
+
+    @State(Scope.Thread)
+    public static class Amounts {
+        String requestAmount = "12.34";
+        String storedSource = "100000.50";
+        String storedTarget = "2000.25";
+        long storedSourceMinorUnits = 10000050L;
+        long storedTargetMinorUnits = 200025L;
+    }
+
+    /**
+     * In-memory H2 database with the same account stored in both former and current amount column types
+     */
+    @State(Scope.Thread)
+    public static class Database {
+        static final String ID = "1";
+
+        private Connection connection;
+        private PreparedStatement selectVarchar;
+        private PreparedStatement updateVarchar;
+        private PreparedStatement selectBigint;
+        private PreparedStatement updateBigint;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            connection = DriverManager.getConnection("jdbc:h2:mem:money-benchmark", "sa", "sa");
+            try (final Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE ACCOUNTS_VARCHAR(ID VARCHAR(255) PRIMARY KEY, AMOUNT VARCHAR(255))");
+                statement.execute("CREATE TABLE ACCOUNTS_BIGINT(ID VARCHAR(255) PRIMARY KEY, AMOUNT BIGINT)");
+                statement.execute("INSERT INTO ACCOUNTS_VARCHAR VALUES ('1', '100000.50')");
+                statement.execute("INSERT INTO ACCOUNTS_BIGINT VALUES ('1', 10000050)");
+            }
+            selectVarchar = connection.prepareStatement("SELECT AMOUNT FROM ACCOUNTS_VARCHAR WHERE ID = ?");
+            updateVarchar = connection.prepareStatement("UPDATE ACCOUNTS_VARCHAR SET AMOUNT = ? WHERE ID = ?");
+            selectBigint = connection.prepareStatement("SELECT AMOUNT FROM ACCOUNTS_BIGINT WHERE ID = ?");
+            updateBigint = connection.prepareStatement("UPDATE ACCOUNTS_BIGINT SET AMOUNT = ? WHERE ID = ?");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+    }
+}
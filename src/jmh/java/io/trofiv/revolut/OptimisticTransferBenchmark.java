@@ -0,0 +1,64 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.trofiv.revolut.exception.GenericException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pessimistic versus optimistic transfers throughput from low to high contention
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class OptimisticTransferBenchmark {
+
+    @Benchmark
+    public void transfer(final Ledger ledger) throws GenericException {
+        ledger.engine.transfer(BenchmarkAccounts.randomTransfer(ledger.accounts));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param({"2", "16", "1000"})
+        int accounts;
+
+        @Param({"jdbc", "optimistic"})
+        String engineName;
+
+        private LedgerEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GenericException {
+            final Injector injector = Guice.createInjector(new BenchmarkModule(ImmutableMap.of(
+                    "ledger.engine", engineName)));
+            BenchmarkAccounts.reset(accounts);
+            engine = injector.getInstance(LedgerEngine.class);
+            engine.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            engine.stop();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.trofiv.revolut.exception.GenericException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers throughput of every ledger engine under contention: all threads either transfer between
+ * the same 2 hot accounts or between uniformly chosen accounts
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class TransferBenchmark {
+
+    @Benchmark
+    public void transfer(final Ledger ledger) throws GenericException {
+        ledger.engine.transfer(BenchmarkAccounts.randomTransfer(ledger.accounts));
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ledger {
+        @Param({"2", "1000"})
+        int accounts;
+
+        @Param({"jdbc", "atomic", "group-commit", "sharded", "sequenced", "wal"})
+        String engineName;
+
+        private LedgerEngine engine;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GenericException, IOException {
+            // journal and log of the previous trials don't match the recreated accounts
+            final Path journal = Files.createTempDirectory("ledger-journal");
+            final Path wal = Files.createTempDirectory("ledger-wal");
+            final Injector injector = Guice.createInjector(new BenchmarkModule(ImmutableMap.of(
+                    "ledger.engine", engineName,
+                    "ledger.journalDirectory", journal.toString(),
+                    "ledger.walDirectory", wal.toString())));
+            BenchmarkAccounts.reset(accounts);
+            engine = injector.getInstance(LedgerEngine.class);
+            engine.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            engine.stop();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.trofiv.revolut;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link MappedTransferLog} append throughput with and without forcing every record to the storage device,
+ * and recovery time of a log of the specified number of records replayed on top of account amounts
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long append(final Appender appender) throws IOException {
+        final long sequence = appender.log.append(BenchmarkAccounts.randomTransfer(ACCOUNTS));
+        if (appender.fsync) {
+            appender.log.force();
+        }
+        return sequence;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<String, Long> recover(final Recovery recovery) throws IOException {
+        final Map<String, Long> amounts = new HashMap<>();
+        MappedTransferLog.replay(recovery.directory, 0, (sequence, sourceAccountId, targetAccountId, amount) -> {
+            amounts.merge(sourceAccountId, -amount, Long::sum);
+            amounts.merge(targetAccountId, amount, Long::sum);
+        });
+        return amounts;
+    }
+
+    @State(Scope.Thread)
+    public static class Appender {
+        @Param({"false", "true"})
+        boolean fsync;
+
+        private Path directory;
+        private MappedTransferLog log;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("ledger-wal");
+            log = new MappedTransferLog(directory, SEGMENT_SIZE, 0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            log.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({"100000", "1000000"})
+        int records;
+
+        private Path directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("ledger-wal");
+            final MappedTransferLog log = new MappedTransferLog(directory, SEGMENT_SIZE, 0);
+            for (int i = 0; i < records; i++) {
+                log.append(BenchmarkAccounts.randomTransfer(ACCOUNTS));
+            }
+            log.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    private static void delete(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
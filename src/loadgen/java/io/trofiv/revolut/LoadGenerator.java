@@ -0,0 +1,251 @@
+package io.trofiv.revolut;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator driving a running application with {@code GET /accounts/:id} and {@code POST /transfers} requests.
+ * Requests are sent on the schedule of the target rate, and at most {@code connections} of them are in flight, so
+ * the load becomes closed-loop once the application can't keep up. Latency is measured from the time a request was
+ * scheduled to be sent rather than from the time it was actually sent, so requests delayed by a stalled application
+ * are not omitted from the latency distribution (coordinated omission). Latency measured from the actual send is
+ * reported as well for comparison.
+ * <p>
+ * Accounts have ids from {@code firstId} to {@code firstId + accounts - 1} and should exist. Read and transfer target
+ * accounts follow Zipf distribution with the specified skew, so the accounts with the lowest ids are the hottest,
+ * transfer source accounts are chosen uniformly
+ */
+public final class LoadGenerator {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final String USAGE = "Options: --url=http://localhost:8080 --rate=1000 --durationSeconds=30 "
+            + "--warmupSeconds=5 --accounts=1000 --firstId=1 --skew=0.99 --readRatio=0.9 --amount=0.01 "
+            + "--connections=1000 --histogramFile=<file to write response time percentiles of all requests to>";
+
+    private final Map<String, String> options;
+    private final String url;
+    private final int rate;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final int accounts;
+    private final int firstId;
+    private final double skew;
+    private final double readRatio;
+    private final String amount;
+    private final int connections;
+    private final ZipfDistribution zipf;
+    private final Stats reads = new Stats("reads");
+    private final Stats transfers = new Stats("transfers");
+    private long measuredNanos;
+
+    private LoadGenerator(final @NotNull Map<String, String> options) {
+        this.options = options;
+        url = option("url", "http://localhost:8080");
+        rate = Integer.parseInt(option("rate", "1000"));
+        durationSeconds = Long.parseLong(option("durationSeconds", "30"));
+        warmupSeconds = Long.parseLong(option("warmupSeconds", "5"));
+        accounts = Integer.parseInt(option("accounts", "1000"));
+        firstId = Integer.parseInt(option("firstId", "1"));
+        skew = Double.parseDouble(option("skew", "0.99"));
+        readRatio = Double.parseDouble(option("readRatio", "0.9"));
+        amount = option("amount", "0.01");
+        connections = Integer.parseInt(option("connections", "1000"));
+        if (rate < 1 || durationSeconds < 1 || warmupSeconds < 0 || accounts < 2 || readRatio < 0 || readRatio > 1
+                || connections < 1) {
+            throw new IllegalArgumentException("Rate, duration, accounts and connections should be positive, "
+                    + "at least 2 accounts are needed for transfers and read ratio should be from 0 to 1");
+        }
+        zipf = new ZipfDistribution(accounts, skew);
+    }
+
+    /**
+     * @param args options in {@code --name=value} form, see {@link #USAGE}
+     * @throws IllegalArgumentException if any option is unknown or invalid
+     * @throws IOException              if histogram file can't be written
+     * @throws InterruptedException     if interrupted while waiting for responses
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Map<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg + ". " + USAGE);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        final LoadGenerator generator = new LoadGenerator(options);
+        final String histogramFile = generator.option("histogramFile", null);
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + options.keySet() + ". " + USAGE);
+        }
+        generator.run();
+        generator.report(System.out);
+        if (histogramFile != null) {
+            try (final PrintStream out = new PrintStream(new FileOutputStream(histogramFile), false, "UTF-8")) {
+                final Histogram all = generator.reads.responseTime.copy();
+                all.add(generator.transfers.responseTime);
+                all.outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        System.out.printf("Sending %d requests per second to %s for %d s after %d s of warm up%n",
+                rate, url, durationSeconds, warmupSeconds);
+        final Semaphore inFlight = new Semaphore(connections);
+        try (final CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                .setMaxConnTotal(connections)
+                .setMaxConnPerRoute(connections)
+                .build()) {
+            client.start();
+            final long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+            final long start = System.nanoTime();
+            final long measurementStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            final long end = measurementStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+            for (long i = 0; ; i++) {
+                final long scheduledAt = start + i * nanosPerSecond / rate;
+                if (scheduledAt - end >= 0) {
+                    break;
+                }
+                final long delay = scheduledAt - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                inFlight.acquire();
+                final ThreadLocalRandom random = ThreadLocalRandom.current();
+                final boolean read = random.nextDouble() < readRatio;
+                final HttpUriRequest request = read ? newRead(random) : newTransfer(random);
+                final Stats stats = scheduledAt - measurementStart >= 0 ? (read ? reads : transfers) : null;
+                final long sentAt = System.nanoTime();
+                client.execute(request, new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(final HttpResponse response) {
+                        if (stats != null) {
+                            stats.record(scheduledAt, sentAt, response.getStatusLine().getStatusCode());
+                        }
+                        inFlight.release();
+                    }
+
+                    @Override
+                    public void failed(final Exception e) {
+                        if (stats != null) {
+                            stats.record(scheduledAt, sentAt, 0);
+                        }
+                        inFlight.release();
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        inFlight.release();
+                    }
+                });
+            }
+            inFlight.acquire(connections);
+            // requests falling behind the schedule are sent after the measurement end
+            measuredNanos = System.nanoTime() - measurementStart;
+        }
+    }
+
+    private @NotNull HttpUriRequest newRead(final @NotNull ThreadLocalRandom random) {
+        return new HttpGet(url + "/accounts/" + (firstId + zipf.sample(random)));
+    }
+
+    private @NotNull HttpUriRequest newTransfer(final @NotNull ThreadLocalRandom random) {
+        final int target = zipf.sample(random);
+        final int source = (target + 1 + random.nextInt(accounts - 1)) % accounts;
+        final HttpPost request = new HttpPost(url + "/transfers");
+        request.setEntity(new StringEntity("{\"sourceAccountId\":\"" + (firstId + source)
+                + "\",\"targetAccountId\":\"" + (firstId + target) + "\",\"amount\":\"" + amount + "\"}",
+                ContentType.APPLICATION_JSON));
+        return request;
+    }
+
+    private void report(final @NotNull PrintStream out) {
+        out.printf("%d accounts from %d, Zipf skew %.2f, %.0f%% reads%n", accounts, firstId, skew, readRatio * 100);
+        out.printf("Target rate %d req/s, achieved %.1f req/s%n", rate,
+                (reads.responseTime.getTotalCount() + transfers.responseTime.getTotalCount())
+                        * (double) TimeUnit.SECONDS.toNanos(1) / measuredNanos);
+        out.println("Response time from scheduled send, ms:");
+        out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "", "requests", "2xx", "429", "errors", "p50", "p99", "p99.9", "max");
+        reads.report(out);
+        transfers.report(out);
+        out.println("Service time from actual send, not corrected for coordinated omission, ms:");
+        out.printf("%-10s %10s %10s %10s %10s%n", "", "p50", "p99", "p99.9", "max");
+        reads.reportServiceTime(out);
+        transfers.reportServiceTime(out);
+    }
+
+    private String option(final @NotNull String name, final String defaultValue) {
+        final String value = options.remove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Latency and outcomes of a request kind. Status {@code 0} means the request failed without a response
+     */
+    private static final class Stats {
+        private final String name;
+        private final Histogram responseTime = new ConcurrentHistogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        private final Histogram serviceTime = new ConcurrentHistogram(MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+        private final LongAdder successful = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private Stats(final String name) {
+            this.name = name;
+        }
+
+        private void record(final long scheduledAt, final long sentAt, final int status) {
+            final long now = System.nanoTime();
+            responseTime.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - scheduledAt), MAX_LATENCY_MICROS));
+            serviceTime.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - sentAt), MAX_LATENCY_MICROS));
+            if (status >= 200 && status < 300) {
+                successful.increment();
+            } else if (status == 429) {
+                rejected.increment();
+            } else {
+                failed.increment();
+            }
+        }
+
+        private void report(final @NotNull PrintStream out) {
+            out.printf("%-10s %10d %10d %10d %10d %10.2f %10.2f %10.2f %10.2f%n", name, responseTime.getTotalCount(),
+                    successful.sum(), rejected.sum(), failed.sum(),
+                    responseTime.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                    responseTime.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                    responseTime.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                    responseTime.getMaxValue() / MICROS_PER_MILLI);
+        }
+
+        private void reportServiceTime(final @NotNull PrintStream out) {
+            out.printf("%-10s %10.2f %10.2f %10.2f %10.2f%n", name,
+                    serviceTime.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                    serviceTime.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                    serviceTime.getValueAtPercentile(99.9) / MICROS_PER_MILLI,
+                    serviceTime.getMaxValue() / MICROS_PER_MILLI);
+        }
+    }
+}
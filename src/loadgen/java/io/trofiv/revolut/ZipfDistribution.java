@@ -0,0 +1,43 @@
+package io.trofiv.revolut;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distribution of ranks from {@code 0} to {@code n - 1}: probability of rank {@code k} is proportional to
+ * {@code 1 / (k + 1)^skew}, so skew {@code 0} is uniform and skew around {@code 1} sends most of the samples to the
+ * first ranks. Samples are drawn by a binary search over the precomputed cumulative distribution
+ */
+final class ZipfDistribution {
+    private final double[] cdf;
+
+    /**
+     * @param n    number of ranks
+     * @param skew distribution exponent, not negative
+     * @throws IllegalArgumentException if there are no ranks or skew is negative
+     */
+    ZipfDistribution(final int n, final double skew) {
+        if (n < 1 || skew < 0) {
+            throw new IllegalArgumentException("Zipf distribution needs at least one rank and not negative skew: "
+                    + n + ", " + skew);
+        }
+        cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+    }
+
+    /**
+     * @param random source of randomness
+     * @return rank drawn from the distribution
+     */
+    int sample(final Random random) {
+        final int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cdf.length - 1);
+    }
+}
@@ -3,6 +3,8 @@ package io.trofiv.revolut;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.base.MoreObjects;
 import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
 import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
@@ -12,14 +14,21 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedSet;
 
 import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.prepareCachedStatement;
 import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
 import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
 
@@ -32,24 +41,38 @@ public class Account {
     private static final String TABLE_NAME = "ACCOUNTS";
     private static final String ID_COLUMN = "ID";
     private static final String AMOUNT_COLUMN = "AMOUNT";
+    private static final String VERSION_COLUMN = "VERSION";
+    private static final String SELECT_BY_ID = "SELECT * FROM " + TABLE_NAME + " WHERE " + ID_COLUMN + " = ?";
+    private static final String SELECT_BY_ID_FOR_UPDATE = SELECT_BY_ID + " FOR UPDATE";
+    private static final String SELECT_VERSIONED_AMOUNT_BY_ID = "SELECT " + AMOUNT_COLUMN + ", " + VERSION_COLUMN
+            + " FROM " + TABLE_NAME + " WHERE " + ID_COLUMN + " = ?";
+    private static final String SELECT_VERSIONED_AMOUNT_BY_ID_FOR_UPDATE = SELECT_VERSIONED_AMOUNT_BY_ID
+            + " FOR UPDATE";
+    private static final String UPDATE_AMOUNT_BY_ID = "UPDATE " + TABLE_NAME + " SET " + AMOUNT_COLUMN + " = ?, "
+            + VERSION_COLUMN + " = " + VERSION_COLUMN + " + 1 WHERE " + ID_COLUMN + " = ?";
+    private static final String UPDATE_AMOUNT_BY_ID_IF_VERSION = UPDATE_AMOUNT_BY_ID + " AND " + VERSION_COLUMN
+            + " = ?";
+    private static final String DEBIT_BY_ID = "UPDATE " + TABLE_NAME + " SET " + AMOUNT_COLUMN + " = "
+            + AMOUNT_COLUMN + " - ?, " + VERSION_COLUMN + " = " + VERSION_COLUMN + " + 1 WHERE " + ID_COLUMN
+            + " = ? AND " + AMOUNT_COLUMN + " >= ?";
+    private static final String CREDIT_BY_ID = "UPDATE " + TABLE_NAME + " SET " + AMOUNT_COLUMN + " = "
+            + AMOUNT_COLUMN + " + ?, " + VERSION_COLUMN + " = " + VERSION_COLUMN + " + 1 WHERE " + ID_COLUMN
+            + " = ? AND " + AMOUNT_COLUMN + " IS NOT NULL";
     private static final boolean READ_ONLY = true;
+    private static final int QUERY_CHUNK_SIZE = 256;
 
     private final String id;
-    private final BigDecimal amount;
-
-
-    @SuppressWarnings("WeakerAccess")
-    public Account(final String id, final BigDecimal amount) {
-        this.id = id;
-        this.amount = amount;
-    }
+    private final long amount;
 
+    /**
+     * @param id     account id
+     * @param amount account amount in {@link Money} minor units
+     */
     @JsonCreator
-    @SuppressWarnings("unused")
     public Account(@JsonProperty("id") final String id,
-                   @JsonProperty("amount") final String amount) {
+                   @JsonProperty("amount") @JsonDeserialize(using = Money.Deserializer.class) final long amount) {
         this.id = id;
-        this.amount = new BigDecimal(amount);
+        this.amount = amount;
     }
 
     @JsonGetter
@@ -57,8 +80,12 @@ public class Account {
         return id;
     }
 
+    /**
+     * @return account amount in {@link Money} minor units
+     */
     @JsonGetter
-    public BigDecimal getAmount() {
+    @JsonSerialize(using = Money.Serializer.class)
+    public long getAmount() {
         return amount;
     }
 
@@ -66,13 +93,13 @@ public class Account {
     public String toString() {
         return MoreObjects.toStringHelper(this)
                 .add("id", id)
-                .add("amount", amount)
+                .add("amount", Money.toPlainString(amount))
                 .toString();
     }
 
     /**
      * Returns account by id using a new connection without a transaction. Doesn't perform commit and rollaback.
-     * Uses {@link TRANSACTION_READ_COMMITTED} isolation level
+     * Uses {@link TRANSACTION_READ_COMMITTED} isolation level. Account is served by {@link AccountCache} if cached
      *
      * @param id specified account id to return
      * @return account for the specified id
@@ -81,10 +108,82 @@ public class Account {
      */
     @SuppressWarnings({"WeakerAccess", "JavadocReference"})
     public static @NotNull Account getAccountById(final @NotNull String id) throws GenericException {
-        return executeWithConnection(conn -> {
+        return AccountCache.get(id, accountId -> executeWithConnection(conn -> {
             setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
                     CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
-            return getAccountById(id, conn);
+            return getVersionedAmountById(conn, accountId);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT));
+    }
+
+    /**
+     * Passes existing accounts with the specified ids to the consumer while they are read, without creating
+     * account objects. Accounts are read using a new connection without a transaction with
+     * {@code WHERE ID IN (...)} statements of up to {@link #QUERY_CHUNK_SIZE} ids, so every chunk is read
+     * in a single round trip and amounts of different chunks may be committed by different transfers.
+     * Uses {@link TRANSACTION_READ_COMMITTED} isolation level, accounts are passed in no particular order
+     *
+     * @param ids      distinct account ids to read
+     * @param consumer receives account amounts in {@link Money} minor units
+     * @throws GenericException if any database-related error has occurred, stored amount is broken or consumer failed,
+     *                          accounts passed before the failure are not reverted
+     */
+    @SuppressWarnings({"WeakerAccess", "JavadocReference"})
+    public static void getAccountsByIds(
+            final @NotNull Collection<String> ids,
+            final @NotNull AmountConsumer consumer)
+            throws GenericException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+            final Iterator<String> iterator = ids.iterator();
+            // every full chunk reuses the same statement, the last chunk may need a shorter one
+            PreparedStatement ps = null;
+            int preparedSize = 0;
+            try {
+                int remaining = ids.size();
+                while (remaining > 0) {
+                    final int chunkSize = Math.min(remaining, QUERY_CHUNK_SIZE);
+                    if (chunkSize != preparedSize) {
+                        if (ps != null) {
+                            ps.close();
+                        }
+                        preparedSize = chunkSize;
+                        ps = conn.prepareStatement("SELECT " + ID_COLUMN + ", " + AMOUNT_COLUMN + " FROM "
+                                + TABLE_NAME + " WHERE " + ID_COLUMN + " IN ("
+                                + String.join(", ", Collections.nCopies(chunkSize, "?")) + ")");
+                    }
+                    for (int i = 1; i <= chunkSize; i++) {
+                        ps.setString(i, iterator.next());
+                    }
+                    try (final ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            final String id = rs.getString(ID_COLUMN);
+                            final long amount = rs.getLong(AMOUNT_COLUMN);
+                            if (rs.wasNull()) {
+                                LOGGER.error("Table has invalid amount value for id {}: null", id);
+                                throw new GenericException("Table has invalid amount value for id " + id + ": null");
+                            }
+                            consumer.accept(id, amount);
+                        }
+                    }
+                    remaining -= chunkSize;
+                }
+            } catch (SQLException e) {
+                LOGGER.error("Accounts query failed for {} accounts", ids.size(), e);
+                throw new GenericException("Accounts query failed for " + ids.size() + " accounts", e);
+            } catch (IOException e) {
+                LOGGER.debug("Accounts write failed for {} accounts", ids.size(), e);
+                throw new GenericException("Accounts write failed for " + ids.size() + " accounts", e);
+            } finally {
+                if (ps != null) {
+                    ps.close();
+                }
+            }
+            //noinspection ReturnOfNull
+            return null;
         }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
     }
 
@@ -93,7 +192,7 @@ public class Account {
      *
      * @param conn   SQL connection to use
      * @param id     account id to update
-     * @param amount amount to set
+     * @param amount amount to set in {@link Money} minor units
      * @throws NoSuchAccountException if account for the specified account id doesn't exist
      * @throws GenericException       if any database-related error has occurred
      */
@@ -101,11 +200,11 @@ public class Account {
     public static void updateAccountAmountById(
             final @NotNull Connection conn,
             final @NotNull String id,
-            final @NotNull BigDecimal amount)
+            final long amount)
             throws GenericException {
-        try (final PreparedStatement ps = conn.prepareStatement(
-                "UPDATE " + TABLE_NAME + " SET " + AMOUNT_COLUMN + " = ? WHERE " + ID_COLUMN + "  = ?")) {
-            ps.setString(1, amount.toPlainString());
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, UPDATE_AMOUNT_BY_ID);
+            ps.setLong(1, amount);
             ps.setString(2, id);
             final int updated = ps.executeUpdate();
             if (updated == 0) {
@@ -119,6 +218,282 @@ public class Account {
         }
     }
 
+    /**
+     * Decreases specified account amount by id in a single statement if the account has sufficient funds
+     * using specified sql connection
+     *
+     * @param conn   SQL connection to use
+     * @param id     account id to update
+     * @param amount amount to subtract in {@link Money} minor units
+     * @return whether account is updated, {@code false} if it has insufficient funds, broken amount
+     * or doesn't exist
+     * @throws GenericException if any database-related error has occurred
+     */
+    static boolean debitAccountById(
+            final @NotNull Connection conn,
+            final @NotNull String id,
+            final long amount)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, DEBIT_BY_ID);
+            ps.setLong(1, amount);
+            ps.setString(2, id);
+            ps.setLong(3, amount);
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            LOGGER.error("Account debit failed for account {} with amount {}", id, amount, e);
+            throw new GenericException("Account debit failed for account " + id + " with amount " + amount, e);
+        }
+    }
+
+    /**
+     * Increases specified account amount by id in a single statement using specified sql connection
+     *
+     * @param conn   SQL connection to use
+     * @param id     account id to update
+     * @param amount amount to add in {@link Money} minor units
+     * @return whether account is updated, {@code false} if it has broken amount or doesn't exist
+     * @throws GenericException if any database-related error has occurred, including amount overflow
+     */
+    static boolean creditAccountById(
+            final @NotNull Connection conn,
+            final @NotNull String id,
+            final long amount)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, CREDIT_BY_ID);
+            ps.setLong(1, amount);
+            ps.setString(2, id);
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            LOGGER.error("Account credit failed for account {} with amount {}", id, amount, e);
+            throw new GenericException("Account credit failed for account " + id + " with amount " + amount, e);
+        }
+    }
+
+    /**
+     * Updates specified account amount by id only if the account row version is still the specified one
+     * using specified sql connection. Doesn't lock the row before update
+     *
+     * @param conn    SQL connection to use
+     * @param id      account id to update
+     * @param amount  amount to set in {@link Money} minor units
+     * @param version row version the amount was calculated for
+     * @return whether account is updated, {@code false} if it was changed concurrently or doesn't exist
+     * @throws GenericException if any database-related error has occurred
+     */
+    static boolean updateAccountAmountIfVersion(
+            final @NotNull Connection conn,
+            final @NotNull String id,
+            final long amount,
+            final long version)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, UPDATE_AMOUNT_BY_ID_IF_VERSION);
+            ps.setLong(1, amount);
+            ps.setString(2, id);
+            ps.setLong(3, version);
+            return ps.executeUpdate() == 1;
+        } catch (SQLException e) {
+            LOGGER.error("Account conditional update failed for account {} with amount {}", id, amount, e);
+            throw new GenericException("Account conditional update failed for account "
+                    + id + " with amount " + amount, e);
+        }
+    }
+
+    /**
+     * Returns account amount with its row version by id without locking using specified sql connection
+     *
+     * @param conn SQL connection to use
+     * @param id   account id to read
+     * @return account amount and row version
+     * @throws NoSuchAccountException if account for the specified account id doesn't exist
+     * @throws GenericException       if any database-related error has occurred or stored amount is broken
+     */
+    static @NotNull VersionedAmount getVersionedAmountById(
+            final @NotNull Connection conn,
+            final @NotNull String id)
+            throws GenericException {
+        return getVersionedAmountById(conn, id, false);
+    }
+
+    /**
+     * Returns account amount with its row version by id using specified sql connection
+     *
+     * @param conn      SQL connection to use
+     * @param id        account id to read
+     * @param forUpdate whether selected row is locked for update
+     * @return account amount and row version
+     * @throws NoSuchAccountException if account for the specified account id doesn't exist
+     * @throws GenericException       if any database-related error has occurred or stored amount is broken
+     */
+    static @NotNull VersionedAmount getVersionedAmountById(
+            final @NotNull Connection conn,
+            final @NotNull String id,
+            final boolean forUpdate)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn,
+                    forUpdate ? SELECT_VERSIONED_AMOUNT_BY_ID_FOR_UPDATE : SELECT_VERSIONED_AMOUNT_BY_ID);
+            ps.setString(1, id);
+            try (final ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    LOGGER.debug("Account {} does not exist", id);
+                    throw new NoSuchAccountException("Account " + id + " does not exist");
+                }
+                return new VersionedAmount(processAccountRow(id, rs).getAmount(), rs.getLong(VERSION_COLUMN));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Versioned account query failed for account {}", id, e);
+            throw new GenericException("Versioned account query failed for account " + id, e);
+        }
+    }
+
+    /**
+     * Updates amounts of the specified accounts in a single JDBC batch using specified sql connection
+     *
+     * @param conn    SQL connection to use
+     * @param amounts account amounts to set in {@link Money} minor units by account id
+     * @throws NoSuchAccountException if any of the specified accounts doesn't exist
+     * @throws GenericException       if any database-related error has occurred
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static void updateAccountAmounts(
+            final @NotNull Connection conn,
+            final @NotNull Map<String, Long> amounts)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, UPDATE_AMOUNT_BY_ID);
+            for (final Map.Entry<String, Long> entry : amounts.entrySet()) {
+                ps.setLong(1, entry.getValue());
+                ps.setString(2, entry.getKey());
+                ps.addBatch();
+            }
+            final int[] updated = ps.executeBatch();
+            for (final int count : updated) {
+                if (count == 0) {
+                    LOGGER.error("Account batch update updated 0 rows: {}", amounts);
+                    throw new NoSuchAccountException("Account batch update updated 0 rows");
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Account batch update failed for {} accounts", amounts.size(), e);
+            throw new GenericException("Account batch update failed for " + amounts.size() + " accounts", e);
+        }
+    }
+
+    /**
+     * Locks the specified accounts for update one by one in the specified order using specified sql connection.
+     * Accounts should be locked in the same global order by all transactions to avoid deadlocks
+     *
+     * @param conn     SQL connection to use
+     * @param ids      account ids sorted in the lock order
+     * @param versions receives row versions of the existing accounts by account id
+     * @return amounts in {@link Money} minor units of the existing accounts by account id
+     * @throws GenericException if any database-related error has occurred or stored amount is broken
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static @NotNull Map<String, Long> lockAccounts(
+            final @NotNull Connection conn,
+            final @NotNull SortedSet<String> ids,
+            final @NotNull Map<String, Long> versions)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, SELECT_VERSIONED_AMOUNT_BY_ID_FOR_UPDATE);
+            final Map<String, Long> accounts = new HashMap<>(ids.size() * 2);
+            for (final String id : ids) {
+                ps.setString(1, id);
+                try (final ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        accounts.put(id, processAccountRow(id, rs).getAmount());
+                        versions.put(id, rs.getLong(VERSION_COLUMN));
+                    }
+                }
+            }
+            return accounts;
+        } catch (SQLException e) {
+            LOGGER.error("Accounts lock failed for {} accounts", ids.size(), e);
+            throw new GenericException("Accounts lock failed for " + ids.size() + " accounts", e);
+        }
+    }
+
+    /**
+     * Returns all stored accounts using specified sql connection
+     *
+     * @param conn SQL connection to use
+     * @return account amounts in {@link Money} minor units by account id
+     * @throws GenericException if any database-related error has occurred
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static @NotNull Map<String, Long> getAllAccounts(final @NotNull Connection conn)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(
+                "SELECT " + ID_COLUMN + ", " + AMOUNT_COLUMN + " FROM " + TABLE_NAME);
+             final ResultSet rs = ps.executeQuery()) {
+            final Map<String, Long> accounts = new HashMap<>();
+            while (rs.next()) {
+                final String id = rs.getString(ID_COLUMN);
+                accounts.put(id, processAccountRow(id, rs).getAmount());
+            }
+            return accounts;
+        } catch (SQLException e) {
+            LOGGER.error("Accounts query failed", e);
+            throw new GenericException("Accounts query failed", e);
+        }
+    }
+
+    /**
+     * Reads amounts of all accounts having valid amounts with a single statement using specified sql connection,
+     * so the amounts are consistent with each other
+     *
+     * @param conn    SQL connection to use
+     * @param amounts receives account amounts in {@link Money} minor units by account id
+     * @return sum of row versions of the read accounts, which grows with every account update
+     * @throws GenericException if any database-related error has occurred
+     */
+    static long getAccountsSnapshot(final @NotNull Connection conn, final @NotNull Map<String, Long> amounts)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(
+                "SELECT " + ID_COLUMN + ", " + AMOUNT_COLUMN + ", " + VERSION_COLUMN + " FROM " + TABLE_NAME
+                        + " WHERE " + AMOUNT_COLUMN + " IS NOT NULL");
+             final ResultSet rs = ps.executeQuery()) {
+            long versionSum = 0;
+            while (rs.next()) {
+                amounts.put(rs.getString(ID_COLUMN), rs.getLong(AMOUNT_COLUMN));
+                versionSum += rs.getLong(VERSION_COLUMN);
+            }
+            return versionSum;
+        } catch (SQLException e) {
+            LOGGER.error("Accounts snapshot query failed", e);
+            throw new GenericException("Accounts snapshot query failed", e);
+        }
+    }
+
+    /**
+     * Checks that no account has changed since a snapshot read by {@link #getAccountsSnapshot} without
+     * reading the accounts, since every account update increments its row version
+     *
+     * @param conn       SQL connection to use
+     * @param count      number of accounts in the snapshot
+     * @param versionSum sum of row versions of the accounts in the snapshot
+     * @return whether the snapshot has the same accounts with the same amounts as the database
+     * @throws GenericException if any database-related error has occurred
+     */
+    static boolean isAccountsSnapshotCurrent(final @NotNull Connection conn, final int count, final long versionSum)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(
+                "SELECT COUNT(*), COALESCE(SUM(" + VERSION_COLUMN + "), 0) FROM " + TABLE_NAME
+                        + " WHERE " + AMOUNT_COLUMN + " IS NOT NULL")) {
+            try (final ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1) == count && rs.getLong(2) == versionSum;
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Accounts snapshot check query failed", e);
+            throw new GenericException("Accounts snapshot check query failed", e);
+        }
+    }
+
     /**
      * Returns account by id using specified sql connection
      *
@@ -150,14 +525,15 @@ public class Account {
             final @NotNull Connection conn,
             final boolean forUpdate)
             throws GenericException {
-        try (final PreparedStatement ps = conn.prepareStatement(
-                "SELECT * FROM " + TABLE_NAME + " WHERE " + ID_COLUMN + " = ?" + (forUpdate ? " FOR UPDATE" : ""))) {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn,
+                    forUpdate ? SELECT_BY_ID_FOR_UPDATE : SELECT_BY_ID);
             ps.setString(1, id);
             try (final ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return processAccountRow(id, rs);
                 } else {
-                    LOGGER.info("Account {} does not exist", id);
+                    LOGGER.debug("Account {} does not exist", id);
                     throw new NoSuchAccountException("Account " + id + " does not exist");
                 }
             } catch (SQLException e) {
@@ -177,21 +553,56 @@ public class Account {
      * @param rs sql result set
      * @return Account represented by sql result set
      * @throws SQLException     if any database-related error has occurred
-     * @throws GenericException if stored amount value can't be deserialized to {@link BigDecimal}
+     * @throws GenericException if stored amount value is missing
      */
     private static @NotNull Account processAccountRow(
             final @NotNull String id,
             final @NotNull ResultSet rs)
             throws SQLException, GenericException {
-        final String amount = rs.getString(AMOUNT_COLUMN);
-        try {
-            final Account account = new Account(id, new BigDecimal(amount));
-            LOGGER.info("Account fetched: {}", account);
-            return account;
-        } catch (NumberFormatException e) {
-            LOGGER.error("Table has invalid BigDecimal value for id {}: {}", id, amount, e);
-            throw new GenericException("Table has invalid BigDecimal value for id "
-                    + id + ": " + amount, e);
+        final long amount = rs.getLong(AMOUNT_COLUMN);
+        if (rs.wasNull()) {
+            LOGGER.error("Table has invalid amount value for id {}: null", id);
+            throw new GenericException("Table has invalid amount value for id " + id + ": null");
+        }
+        final Account account = new Account(id, amount);
+        LOGGER.debug("Account fetched: {}", account);
+        return account;
+    }
+
+    /**
+     * Receives accounts while they are read
+     */
+    @FunctionalInterface
+    public interface AmountConsumer {
+        /**
+         * @param id     account id
+         * @param amount account amount in {@link Money} minor units
+         * @throws IOException if account can't be written
+         */
+        void accept(@NotNull String id, long amount) throws IOException;
+    }
+
+    /**
+     * Account amount with the row version it was read at
+     */
+    static final class VersionedAmount {
+        private final long amount;
+        private final long version;
+
+        VersionedAmount(final long amount, final long version) {
+            this.amount = amount;
+            this.version = version;
+        }
+
+        /**
+         * @return account amount in {@link Money} minor units
+         */
+        long getAmount() {
+            return amount;
+        }
+
+        long getVersion() {
+            return version;
         }
     }
 }
@@ -0,0 +1,216 @@
+package io.trofiv.revolut;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import com.pivovarit.function.ThrowingFunction;
+import io.trofiv.revolut.Account.VersionedAmount;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded write-through cache of committed account amounts. Every cached amount keeps the row version it was
+ * committed or read at, and an amount replaces a cached one only if it has a newer version, so a miss loaded
+ * before a concurrent commit can't overwrite the committed amount. Writers put committed amounts after commit and
+ * readers don't take any locks, so the cache never serializes transactions
+ */
+@SuppressWarnings("UtilityClassCanBeEnum")
+public final class AccountCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    // version of amounts put without a known row version, replaced by any versioned amount
+    private static final long UNKNOWN_VERSION = -1;
+
+    private static volatile @Nullable Cache<String, Entry> cache;
+    private static volatile long maxSize;
+
+    private AccountCache() {
+    }
+
+    /**
+     * Configures cache, called once by the injector. Cache is disabled until configured
+     *
+     * @param enabled whether accounts are cached
+     * @param maxSize max number of cached accounts, least recently used accounts are evicted first
+     * @param ttlMs   time since the last write after which cached account is evicted, bounds staleness
+     *                for amounts changed bypassing the application
+     */
+    @Inject
+    static void configure(
+            @Named("accounts.cache.enabled") final boolean enabled,
+            @Named("accounts.cache.maxSize") final long maxSize,
+            @Named("accounts.cache.ttlMs") final long ttlMs) {
+        AccountCache.maxSize = maxSize;
+        cache = enabled
+                ? CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build()
+                : null;
+        LOGGER.info("Account cache enabled: {}, max size: {}, ttl: {} ms", enabled, maxSize, ttlMs);
+    }
+
+    /**
+     * Returns cached account or loads it, loaded account is cached unless a newer one is cached meanwhile
+     *
+     * @param id     account id
+     * @param loader loads committed account amount with its row version from the database
+     * @return account for the specified id
+     * @throws GenericException if loader failed, missing accounts are not cached
+     */
+    static @NotNull Account get(
+            final @NotNull String id,
+            final @NotNull ThrowingFunction<String, VersionedAmount, GenericException> loader)
+            throws GenericException {
+        final Cache<String, Entry> accounts = cache;
+        if (accounts == null) {
+            return new Account(id, loader.apply(id).getAmount());
+        }
+        final Entry cached = accounts.getIfPresent(id);
+        if (cached != null) {
+            return cached.account;
+        }
+        final VersionedAmount loaded = loader.apply(id);
+        return put(accounts, id, loaded.getAmount(), loaded.getVersion()).account;
+    }
+
+    /**
+     * Runs a transaction changing the specified accounts and puts amounts committed by it to the cache once it's
+     * committed. If transaction failed, the specified accounts are evicted since commit outcome may be unknown
+     *
+     * @param ids         ids of all accounts which may be changed by the transaction
+     * @param transaction commits the transaction, collects committed amounts in {@link Money} minor units
+     *                    with the row versions they are committed at by account id to the specified map
+     * @param <T>         transaction result type
+     * @return transaction result
+     * @throws GenericException if transaction failed
+     */
+    static <T> T writeThrough(
+            final @NotNull Collection<String> ids,
+            final @NotNull ThrowingFunction<Map<String, VersionedAmount>, T, GenericException> transaction)
+            throws GenericException {
+        final Cache<String, Entry> accounts = cache;
+        final Map<String, VersionedAmount> committed = new HashMap<>(ids.size() * 2);
+        if (accounts == null) {
+            return transaction.apply(committed);
+        }
+        final T result;
+        try {
+            result = transaction.apply(committed);
+        } catch (GenericException | RuntimeException e) {
+            accounts.invalidateAll(ids);
+            throw e;
+        }
+        committed.forEach((id, amount) -> put(accounts, id, amount.getAmount(), amount.getVersion()));
+        return result;
+    }
+
+    /**
+     * Puts committed amounts of accounts which are not cached yet, should be called before any transfers
+     * are applied. Amounts are put without row versions, so any loaded or committed amount replaces them
+     *
+     * @param amounts committed account amounts in {@link Money} minor units by account id
+     * @return number of put accounts, at most max cache size
+     */
+    static int warmUp(final @NotNull Map<String, Long> amounts) {
+        final Cache<String, Entry> accounts = cache;
+        if (accounts == null) {
+            return 0;
+        }
+        int put = 0;
+        for (final Map.Entry<String, Long> entry : amounts.entrySet()) {
+            if (accounts.size() >= maxSize) {
+                break;
+            }
+            final Account account = new Account(entry.getKey(), entry.getValue());
+            if (accounts.asMap().putIfAbsent(entry.getKey(), new Entry(account, UNKNOWN_VERSION)) == null) {
+                put++;
+            }
+        }
+        return put;
+    }
+
+    /**
+     * @return whether accounts are cached
+     */
+    static boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Evicts the specified accounts, should be called once a transaction changing amounts without knowing
+     * their resulting row versions is committed
+     *
+     * @param ids ids of accounts to evict
+     */
+    static void invalidate(final @NotNull Collection<String> ids) {
+        final Cache<String, Entry> accounts = cache;
+        if (accounts != null) {
+            accounts.invalidateAll(ids);
+        }
+    }
+
+    /**
+     * Evicts all cached accounts, should be called when amounts are changed bypassing the application
+     */
+    static void invalidateAll() {
+        final Cache<String, Entry> accounts = cache;
+        if (accounts != null) {
+            accounts.invalidateAll();
+        }
+    }
+
+    /**
+     * @return cache statistics, {@code null} if cache is disabled
+     */
+    static @Nullable CacheStats getStats() {
+        final Cache<String, Entry> accounts = cache;
+        return accounts == null ? null : accounts.stats();
+    }
+
+    /**
+     * @return approximate number of cached accounts
+     */
+    static long getSize() {
+        final Cache<String, Entry> accounts = cache;
+        return accounts == null ? 0 : accounts.size();
+    }
+
+    /**
+     * Caches the amount unless the cached one has the same or a newer row version
+     *
+     * @return cached entry after the put
+     */
+    private static @NotNull Entry put(
+            final @NotNull Cache<String, Entry> accounts,
+            final @NotNull String id,
+            final long amount,
+            final long version) {
+        return accounts.asMap().merge(id, new Entry(new Account(id, amount), version),
+                (cached, loaded) -> cached.version >= loaded.version ? cached : loaded);
+    }
+
+    /**
+     * Cached account with the row version its amount is committed at
+     */
+    private static final class Entry {
+        private final Account account;
+        private final long version;
+
+        Entry(final @NotNull Account account, final long version) {
+            this.account = account;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Snapshots of all account amounts written to a {@link BalanceCheckpoint} file every
+ * {@code accounts.snapshot.intervalMs} and on shutdown, and loaded on startup to pre-warm {@link AccountCache}.
+ * Snapshot position is the sum of row versions of its accounts, so a snapshot is loaded only if no account has
+ * changed since it was written, which is checked with a single aggregate query. Snapshots are taken only if
+ * account cache is enabled
+ */
+@Singleton
+public class AccountSnapshots {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final boolean READ_ONLY = true;
+
+    private final Path file;
+    private final long intervalMs;
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("accounts-snapshot").setDaemon(true).build());
+    private int writtenCount = -1;
+    private long writtenVersionSum = -1;
+
+    /**
+     * @param intervalMs interval between snapshots, {@code 0} means a snapshot is written on shutdown only
+     */
+    @Inject
+    public AccountSnapshots(
+            @Named("accounts.snapshot.file") final String file,
+            @Named("accounts.snapshot.intervalMs") final long intervalMs) {
+        this.file = Paths.get(file);
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Pre-warms account cache with the snapshot if it's up to date, should be called before any transfers
+     * are applied. Snapshot which can't be loaded is skipped, since accounts are still loaded on demand
+     */
+    void load() {
+        if (!AccountCache.isEnabled()) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final Map<String, Long> amounts = new HashMap<>();
+        try {
+            final long versionSum = BalanceCheckpoint.read(file, amounts);
+            if (amounts.isEmpty()) {
+                LOGGER.info("No accounts snapshot at {}", file);
+                return;
+            }
+            final boolean current = executeWithConnection(conn -> {
+                setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                        CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+                return Account.isAccountsSnapshotCurrent(conn, amounts.size(), versionSum);
+            }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+            if (!current) {
+                LOGGER.info("Accounts snapshot at {} is outdated, skipped", file);
+                return;
+            }
+            final int cached = AccountCache.warmUp(amounts);
+            writtenCount = amounts.size();
+            writtenVersionSum = versionSum;
+            LOGGER.info("Account cache is warmed up with {} of {} accounts from snapshot in {} ms",
+                    cached, amounts.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | GenericException e) {
+            LOGGER.warn("Accounts snapshot at {} can't be loaded, skipped", file, e);
+        }
+    }
+
+    /**
+     * Starts periodic snapshots
+     */
+    void start() {
+        if (AccountCache.isEnabled() && intervalMs > 0) {
+            snapshotExecutor.scheduleWithFixedDelay(this::writeQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops periodic snapshots and writes the final one, should be called once no more transfers are applied
+     */
+    void stop() {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (AccountCache.isEnabled()) {
+            writeQuietly();
+        }
+    }
+
+    /**
+     * Writes a snapshot of all accounts unless they are unchanged since the last written one
+     *
+     * @throws GenericException if accounts can't be read or snapshot can't be written
+     */
+    synchronized void write() throws GenericException {
+        final long start = System.nanoTime();
+        final Map<String, Long> amounts = new HashMap<>();
+        final long versionSum = executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+            return Account.getAccountsSnapshot(conn, amounts);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        if (amounts.size() == writtenCount && versionSum == writtenVersionSum) {
+            return;
+        }
+        final String[] ids = new String[amounts.size()];
+        final long[] values = new long[amounts.size()];
+        int i = 0;
+        for (final Map.Entry<String, Long> entry : amounts.entrySet()) {
+            ids[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+        try {
+            BalanceCheckpoint.write(file, versionSum, ids, values);
+        } catch (IOException e) {
+            LOGGER.error("Accounts snapshot write failed at {}", file, e);
+            throw new GenericException("Accounts snapshot write failed at " + file, e);
+        }
+        writtenCount = amounts.size();
+        writtenVersionSum = versionSum;
+        LOGGER.info("Snapshot of {} accounts written in {} ms",
+                amounts.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (GenericException e) {
+            LOGGER.debug("Accounts snapshot failed", e);
+        }
+    }
+}
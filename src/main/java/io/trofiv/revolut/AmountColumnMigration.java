@@ -0,0 +1,98 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Converts accounts table created with {@code VARCHAR} decimal amounts to {@code BIGINT} {@link Money} minor units.
+ * Amounts which can't be represented in minor units are logged and left empty, such accounts are reported
+ * as broken on read. Migration can be safely restarted if it was interrupted. Applied by {@link SchemaMigrator}
+ */
+@SuppressWarnings({"UtilityClassCanBeEnum", "SqlNoDataSourceInspection", "SqlResolve"})
+final class AmountColumnMigration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private AmountColumnMigration() {
+    }
+
+    /**
+     * Migrates accounts table if it still has decimal amounts, does nothing otherwise
+     *
+     * @param conn SQL connection to use, should be in auto commit mode since H2 commits DDL statements anyway
+     * @throws GenericException if any database-related error has occurred
+     */
+    static void migrate(final @NotNull Connection conn) throws GenericException {
+        try {
+            final String type = getColumnType(conn, "AMOUNT");
+            if (type == null && getColumnType(conn, "AMOUNT_MINOR") != null) {
+                LOGGER.info("Finishing interrupted accounts amount column migration");
+                renameMigratedColumn(conn);
+                return;
+            }
+            if (type == null || !type.contains("CHAR")) {
+                return;
+            }
+            LOGGER.info("Migrating accounts amount column from {} to minor units with scale {}", type, Money.SCALE);
+            try (final Statement statement = conn.createStatement()) {
+                if (getColumnType(conn, "AMOUNT_MINOR") != null) {
+                    statement.execute("ALTER TABLE ACCOUNTS DROP COLUMN AMOUNT_MINOR");
+                }
+                statement.execute("ALTER TABLE ACCOUNTS ADD COLUMN AMOUNT_MINOR BIGINT");
+            }
+            int migrated = 0;
+            try (final PreparedStatement select = conn.prepareStatement("SELECT ID, AMOUNT FROM ACCOUNTS");
+                 final PreparedStatement update = conn.prepareStatement(
+                         "UPDATE ACCOUNTS SET AMOUNT_MINOR = ? WHERE ID = ?");
+                 final ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    final String id = rs.getString(1);
+                    final String amount = rs.getString(2);
+                    try {
+                        update.setLong(1, Money.parse(String.valueOf(amount).trim()));
+                    } catch (NumberFormatException e) {
+                        LOGGER.error("Account {} has amount {} which can't be migrated", id, amount);
+                        continue;
+                    }
+                    update.setString(2, id);
+                    update.addBatch();
+                    migrated++;
+                }
+                update.executeBatch();
+            }
+            try (final Statement statement = conn.createStatement()) {
+                statement.execute("ALTER TABLE ACCOUNTS DROP COLUMN AMOUNT");
+            }
+            renameMigratedColumn(conn);
+            LOGGER.info("Migrated {} accounts to minor units", migrated);
+        } catch (SQLException e) {
+            LOGGER.error("Accounts amount column migration failed", e);
+            throw new GenericException("Accounts amount column migration failed", e);
+        }
+    }
+
+    private static void renameMigratedColumn(final @NotNull Connection conn) throws SQLException {
+        try (final Statement statement = conn.createStatement()) {
+            statement.execute("ALTER TABLE ACCOUNTS ALTER COLUMN AMOUNT_MINOR RENAME TO AMOUNT");
+        }
+    }
+
+    private static String getColumnType(final @NotNull Connection conn, final @NotNull String column)
+            throws SQLException {
+        try (final PreparedStatement ps = conn.prepareStatement("SELECT TYPE_NAME FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'ACCOUNTS' AND COLUMN_NAME = ?")) {
+            ps.setString(1, column);
+            try (final ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package io.trofiv.revolut;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
@@ -9,22 +17,46 @@ import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.DuplicateRequestException;
+import io.trofiv.revolut.exception.GenericException;
 import io.trofiv.revolut.exception.InvalidRequestException;
 import io.trofiv.revolut.exception.NoSuchAccountException;
 import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import io.trofiv.revolut.exception.TooManyRequestsException;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.eclipse.jetty.server.Request;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.lang.invoke.MethodHandles;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
 import static org.eclipse.jetty.http.HttpStatus.Code.BAD_REQUEST;
+import static org.eclipse.jetty.http.HttpStatus.Code.CONFLICT;
 import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
 import static org.eclipse.jetty.http.HttpStatus.Code.INTERNAL_SERVER_ERROR;
 import static org.eclipse.jetty.http.HttpStatus.Code.NOT_FOUND;
 import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
 import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.eclipse.jetty.http.HttpStatus.Code.TOO_MANY_REQUESTS;
 
 @Singleton
 /**
@@ -34,23 +66,109 @@ public class Application {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
     private static final String DEFAULT_EXC_SERIALIZATION =
             "{\"error\": \"Exception serialization failed, please check logs for details\"}";
+    private static final String ERROR_BODY_PREFIX = "{\"error\":\"";
+    private static final String ERROR_BODY_SUFFIX = "\"}";
+    private static final String NULL_ERROR_BODY = "{\"error\":null}";
     private static final String APPLICATION_JSON = "application/json";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4";
+    private static final float NANOS_PER_MILLI = 1_000_000;
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final String RETRY_AFTER = "Retry-After";
     private static final ObjectMapper JSON = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // request bodies are deserialized over the servlet streams and response bodies are serialized
+    // with readers and writers built once
+    private static final ObjectReader TRANSFER_READER = JSON.readerFor(Transfer.class);
+    private static final ObjectReader ACCOUNT_ID_READER = JSON.readerFor(String.class);
+    private static final ObjectWriter ACCOUNT_WRITER = JSON.writerFor(Account.class);
+    private static final ObjectWriter TRANSFER_RESULTS_WRITER = JSON
+            .writerFor(new TypeReference<List<TransferResult>>() {
+            });
+    private static final int ACCOUNT_SIZE_ESTIMATE = 48;
 
     private final int port;
+    private final DatabaseService databaseService;
+    private final LedgerEngine ledgerEngine;
+    private final int batchMaxSize;
+    private final BatchMode defaultBatchMode;
+    private final boolean stackFrames;
+    private final IdempotencyStore idempotencyStore;
+    private final int exportMaxSize;
+    private final AccountSnapshots accountSnapshots;
+    private final int queryMaxSize;
+    private final DatabaseExecutor databaseExecutor;
+    private final String retryAfterSeconds;
+    private final HotAccountLane hotAccountLane;
     private Javalin app;
 
+    /**
+     * @param stackFrames       whether to include stack frames of unexpected and request validation errors into
+     *                          error responses, intended for debugging only
+     * @param exportMaxSize     max number of transfers returned by a single transfers history request
+     * @param queryMaxSize      max number of account ids in a single accounts query
+     * @param retryAfterSeconds delay suggested to clients of requests rejected due to database executor saturation
+     */
     @Inject
-    public Application(@Named("server.port") final int port) {
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    public Application(
+            @Named("server.port") final int port,
+            final DatabaseService databaseService,
+            final LedgerEngine ledgerEngine,
+            @Named("transfers.batch.maxSize") final int batchMaxSize,
+            @Named("transfers.batch.mode") final String defaultBatchMode,
+            @Named("errors.stackFrames") final boolean stackFrames,
+            final IdempotencyStore idempotencyStore,
+            @Named("transfers.export.maxSize") final int exportMaxSize,
+            final AccountSnapshots accountSnapshots,
+            @Named("accounts.query.maxSize") final int queryMaxSize,
+            final DatabaseExecutor databaseExecutor,
+            @Named("db.executor.retryAfterSeconds") final int retryAfterSeconds,
+            final HotAccountLane hotAccountLane)
+            throws InvalidRequestException {
         this.port = port;
+        this.databaseService = databaseService;
+        this.ledgerEngine = ledgerEngine;
+        this.batchMaxSize = batchMaxSize;
+        this.defaultBatchMode = BatchMode.fromName(defaultBatchMode);
+        this.stackFrames = stackFrames;
+        this.idempotencyStore = idempotencyStore;
+        this.exportMaxSize = exportMaxSize;
+        this.accountSnapshots = accountSnapshots;
+        this.queryMaxSize = queryMaxSize;
+        this.databaseExecutor = databaseExecutor;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        this.hotAccountLane = hotAccountLane;
     }
 
     /**
-     * Starts application server and configured endpoints mapping
+     * Migrates database schema, warms up connection pool and account cache, starts ledger engine, application server,
+     * configured endpoints mapping and account snapshots
+     *
+     * @throws GenericException if schema migration, pool warm up or ledger engine start failed
      */
     @SuppressWarnings("OverlyLongMethod")
-    public void start() {
-        app = Javalin.create().start(port);
+    public void start() throws GenericException {
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, false);
+            SchemaMigrator.migrate(conn);
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        try {
+            databaseService.warmUp();
+        } catch (SQLException e) {
+            LOGGER.error("Connection pool warm up failed", e);
+            throw new GenericException("Connection pool warm up failed", e);
+        }
+        accountSnapshots.load();
+        ledgerEngine.start();
+        app = Javalin.create(config -> config.requestLogger((ctx, executionTimeMs) -> Metrics.recordRequest(
+                ctx.method(), ctx.matchedPath(), ctx.status(), (long) (executionTimeMs * NANOS_PER_MILLI))))
+                .start(port);
+        accountSnapshots.start();
 
         app.get("/health", ctx -> {
             ctx.status(OK.getCode());
@@ -58,12 +176,68 @@ public class Application {
             ctx.result(JSON.writeValueAsString(ImmutableMap.of("status", "ok")));
         });
 
-        app.get("/accounts/:id", ctx -> {
+        app.get("/metrics", ctx -> {
+            ctx.status(OK.getCode());
+            ctx.contentType(PROMETHEUS_TEXT);
+            ctx.result(Metrics.scrape());
+        });
+
+        app.get("/admin/cache", ctx -> {
+            final CacheStats stats = AccountCache.getStats();
+            ctx.status(OK.getCode());
             ctx.contentType(APPLICATION_JSON);
-            final Account account = Account.getAccountById(ctx.pathParam("id"));
+            ctx.result(JSON.writeValueAsString(stats == null
+                    ? ImmutableMap.of("enabled", false)
+                    : ImmutableMap.builder()
+                    .put("enabled", true)
+                    .put("size", AccountCache.getSize())
+                    .put("hits", stats.hitCount())
+                    .put("misses", stats.missCount())
+                    .put("hitRate", stats.hitRate())
+                    .put("evictions", stats.evictionCount())
+                    .build()));
+        });
+
+        app.get("/admin/hot-accounts", ctx -> {
             ctx.status(OK.getCode());
             ctx.contentType(APPLICATION_JSON);
-            ctx.result(JSON.writeValueAsString(account));
+            ctx.result(JSON.writeValueAsString(ImmutableMap.of(
+                    "mode", HotAccounts.getMode(),
+                    "accounts", HotAccounts.getTopAccounts())));
+        });
+
+        // Jetty threads are released while the database is used, database executor threads return responses
+        // once their connections are released, so slow clients don't hold pooled connections
+        app.get("/accounts/:id", ctx -> {
+            final String id = ctx.pathParam("id");
+            ctx.result(databaseExecutor.supply(() -> ACCOUNT_WRITER.writeValueAsString(ledgerEngine.getAccount(id)))
+                    .thenApply(json -> {
+                        ctx.status(OK.getCode());
+                        ctx.contentType(APPLICATION_JSON);
+                        return json;
+                    }));
+        }).post("/accounts/query", ctx -> {
+            final Set<String> ids = readAccountIds(ctx.req.getInputStream());
+            ctx.result(databaseExecutor.supply(() -> {
+                final StringWriter json = new StringWriter(ids.size() * ACCOUNT_SIZE_ESTIMATE);
+                try (final JsonGenerator gen = JSON_FACTORY.createGenerator(json)) {
+                    final char[] amountBuffer = new char[Money.PLAIN_MAX_LENGTH];
+                    gen.writeStartArray();
+                    ledgerEngine.getAccounts(ids, (accountId, amount) -> {
+                        gen.writeStartObject();
+                        gen.writeStringField("id", accountId);
+                        gen.writeFieldName("amount");
+                        gen.writeRawValue(amountBuffer, 0, Money.toPlainChars(amount, amountBuffer));
+                        gen.writeEndObject();
+                    });
+                    gen.writeEndArray();
+                }
+                return json.toString();
+            }).thenApply(json -> {
+                ctx.status(OK.getCode());
+                ctx.contentType(APPLICATION_JSON);
+                return json;
+            }));
         }).exception(NoSuchAccountException.class, (e, ctx) -> {
             ctx.status(NOT_FOUND.getCode());
             ctx.contentType(APPLICATION_JSON);
@@ -75,19 +249,73 @@ public class Application {
         });
 
         app.post("/transfers", ctx -> {
-            final String body = ctx.body();
             final Transfer transfer;
             try {
-                transfer = JSON.readValue(body, Transfer.class);
+                transfer = TRANSFER_READER.readValue(ctx.req.getInputStream());
             } catch (IOException e) {
                 throw new InvalidRequestException("Invalid request!", e);
             }
-            transfer.makeTransfer();
-            ctx.status(NO_CONTENT.getCode());
+            final String key = ctx.header(IDEMPOTENCY_KEY);
+            if (key == null) {
+                ctx.result(transferAsync(transfer).thenApply(ignored -> {
+                    ctx.status(NO_CONTENT.getCode());
+                    //noinspection ReturnOfNull
+                    return null;
+                }));
+                return;
+            }
+            if (!ledgerEngine.supportsIdempotencyKeys()) {
+                throw new InvalidRequestException(IDEMPOTENCY_KEY + " header is not supported by the ledger engine!");
+            }
+            IdempotencyStore.validate(key);
+            final int status = idempotencyStore.getStatus(key);
+            if (status != IdempotencyStore.MISSING) {
+                ctx.status(status);
+                ctx.header(IDEMPOTENT_REPLAYED, "true");
+                return;
+            }
+            idempotencyStore.startApplying(key);
+            final CompletableFuture<Void> result;
+            try {
+                result = transferAsync(transfer.withIdempotencyKey(key));
+            } catch (TooManyRequestsException | RuntimeException e) {
+                idempotencyStore.finishApplying(key, IdempotencyStore.MISSING);
+                throw e;
+            }
+            ctx.result(result.handle((ignored, e) -> e).thenCompose(e -> finishApplying(ctx, key, e)));
+        }).get("/transfers", ctx -> {
+            if (!ledgerEngine.recordsHistory()) {
+                throw new InvalidRequestException("Transfers history is not recorded by the ledger engine!");
+            }
+            final long afterSeq = getLongQueryParam(ctx, "afterSeq", 0);
+            final long limit = getLongQueryParam(ctx, "limit", exportMaxSize);
+            if (afterSeq < 0 || limit <= 0 || limit > exportMaxSize) {
+                throw new InvalidRequestException("afterSeq must not be negative and limit must be from 1 to "
+                        + exportMaxSize + "!");
+            }
+            ctx.status(OK.getCode());
+            ctx.contentType(APPLICATION_NDJSON);
+            ctx.result(exportHistory(ctx, afterSeq, (int) limit).handle((ignored, e) -> abortStream(ctx, e,
+                    "Transfers history stream is aborted after sequence number " + afterSeq)));
+        }).post("/transfers/batch", ctx -> {
+            final String mode = ctx.queryParam("mode");
+            final TransferBatch batch = new TransferBatch(readTransfers(ctx.req.getInputStream()),
+                    mode == null ? defaultBatchMode : BatchMode.fromName(mode));
+            ctx.result(databaseExecutor.supply(() -> ledgerEngine.transfer(batch)).thenApply(results -> {
+                try {
+                    ctx.status(OK.getCode());
+                    ctx.contentType(APPLICATION_JSON);
+                    return TRANSFER_RESULTS_WRITER.writeValueAsString(results);
+                } catch (JsonProcessingException e) {
+                    throw new CompletionException(e);
+                }
+            }));
         }).exception(NoSuchAccountException.class, (e, ctx) -> {
             ctx.status(NOT_FOUND.getCode());
             ctx.contentType(APPLICATION_JSON);
             ctx.result(getExceptionInfo(e, true));
+        }).exception(DuplicateRequestException.class, (e, ctx) -> {
+            replayIndexedResponse(ctx, e);
         }).exception(InvalidRequestException.class, (e, ctx) -> {
             ctx.status(BAD_REQUEST.getCode());
             ctx.contentType(APPLICATION_JSON);
@@ -96,6 +324,11 @@ public class Application {
             ctx.status(FORBIDDEN.getCode());
             ctx.contentType(APPLICATION_JSON);
             ctx.result(getExceptionInfo(e, true));
+        }).exception(TooManyRequestsException.class, (e, ctx) -> {
+            ctx.status(TOO_MANY_REQUESTS.getCode());
+            ctx.header(RETRY_AFTER, retryAfterSeconds);
+            ctx.contentType(APPLICATION_JSON);
+            ctx.result(getExceptionInfo(e, true));
         }).exception(Exception.class, (e, ctx) -> {
             ctx.status(INTERNAL_SERVER_ERROR.getCode());
             ctx.contentType(APPLICATION_JSON);
@@ -104,40 +337,293 @@ public class Application {
     }
 
     /**
-     * Stops application server
+     * Stops application server, hot account lane, database executor and ledger engine, writes the final account
+     * snapshot
      */
     public void stop() {
         app.stop();
+        hotAccountLane.stop();
+        databaseExecutor.stop();
+        ledgerEngine.stop();
+        accountSnapshots.stop();
     }
 
     public int getPort() {
         return port;
     }
 
-    public static void main(final String[] args) {
+    public static void main(final String[] args) throws GenericException {
         final Injector injector = Guice.createInjector(new MainModule());
         final Application application = injector.getInstance(Application.class);
         application.start();
     }
 
+    /**
+     * Applies the transfer with the ledger engine called by a database executor thread, or by the hot account lane
+     * if the transfer has a hot account
+     *
+     * @param transfer transfer to perform
+     * @return future completed once transfer is durably applied
+     * @throws TooManyRequestsException if database executor or hot account lane queue is full
+     */
+    private @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer)
+            throws TooManyRequestsException {
+        if (hotAccountLane.accepts(transfer)) {
+            return hotAccountLane.transfer(ledgerEngine, transfer);
+        }
+        return databaseExecutor.supply(() -> ledgerEngine.transferAsync(transfer)).thenCompose(applied -> applied);
+    }
+
+    /**
+     * Records outcome of the transfer applied with the idempotency key and responds with it. Rejection is persisted
+     * and already used key is looked up in the database by a database executor thread, so retries get the same
+     * response without blocking a request thread
+     *
+     * @param ctx     request context
+     * @param key     idempotency key of the transfer
+     * @param failure failure of the transfer, {@code null} if it's applied
+     * @return future completed once the response is set, completed exceptionally with the transfer failure
+     * if it's responded by exception handlers
+     */
+    private @NotNull CompletableFuture<Void> finishApplying(
+            final @NotNull Context ctx,
+            final @NotNull String key,
+            final @Nullable Throwable failure) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        if (failure == null) {
+            idempotencyStore.finishApplying(key, NO_CONTENT.getCode());
+            ctx.status(NO_CONTENT.getCode());
+            result.complete(null);
+            return result;
+        }
+        final Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        final int status = IdempotencyStore.getRejectionStatus(cause);
+        if (status == IdempotencyStore.MISSING) {
+            idempotencyStore.finishApplying(key, IdempotencyStore.MISSING);
+        }
+        try {
+            if (cause instanceof DuplicateRequestException) {
+                databaseExecutor.supply(() -> idempotencyStore.load(key)).whenComplete((stored, e) -> {
+                    if (e != null || stored == IdempotencyStore.MISSING) {
+                        result.completeExceptionally(e == null ? cause : e);
+                        return;
+                    }
+                    ctx.status(stored);
+                    ctx.header(IDEMPOTENT_REPLAYED, "true");
+                    result.complete(null);
+                });
+            } else if (status != IdempotencyStore.MISSING) {
+                databaseExecutor.supply(() -> idempotencyStore.storeRejection(key, status))
+                        .whenComplete((stored, e) -> {
+                            if (e != null) {
+                                LOGGER.warn("Rejection of idempotency key {} is not recorded", key, e);
+                            }
+                            idempotencyStore.finishApplying(key, e == null ? stored : IdempotencyStore.MISSING);
+                            result.completeExceptionally(cause);
+                        });
+            } else {
+                result.completeExceptionally(cause);
+            }
+        } catch (TooManyRequestsException e) {
+            if (status != IdempotencyStore.MISSING) {
+                idempotencyStore.finishApplying(key, IdempotencyStore.MISSING);
+            }
+            result.completeExceptionally(cause);
+        }
+        return result;
+    }
+
+    /**
+     * Responds to a request with an already used idempotency key with the outcome of the key recorded in the memory
+     * index. Outcomes of the keys rejected by this application instance are always indexed, so if outcome
+     * is not indexed, the request is still being applied and is responded with {@code 409} status
+     *
+     * @param ctx request context
+     * @param e   duplicate request failure
+     */
+    private void replayIndexedResponse(final @NotNull Context ctx, final @NotNull DuplicateRequestException e) {
+        final String key = ctx.header(IDEMPOTENCY_KEY);
+        final int status = key == null ? IdempotencyStore.MISSING : idempotencyStore.getStatus(key);
+        if (status == IdempotencyStore.MISSING) {
+            ctx.status(CONFLICT.getCode());
+            ctx.contentType(APPLICATION_JSON);
+            ctx.result(getExceptionInfo(e, true));
+            return;
+        }
+        ctx.status(status);
+        ctx.header(IDEMPOTENT_REPLAYED, "true");
+    }
+
+    /**
+     * @param ctx          request context
+     * @param name         query parameter name
+     * @param defaultValue value used if parameter is not specified
+     * @return query parameter value
+     * @throws InvalidRequestException if parameter is not a number
+     */
+    private static long getLongQueryParam(
+            final @NotNull Context ctx,
+            final @NotNull String name,
+            final long defaultValue)
+            throws InvalidRequestException {
+        final String value = ctx.queryParam(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("Invalid " + name + ": " + value, e);
+        }
+    }
+
+    /**
+     * Streams transfers history page by page, so the response is chunked. Every page is read into a buffer
+     * by a database executor thread, which releases its connection before the page is written
+     *
+     * @param ctx      request context
+     * @param afterSeq sequence number of the last transfer already written
+     * @param limit    max number of transfers to write
+     * @return future completed once all pages are written
+     * @throws TooManyRequestsException if database executor queue is full
+     */
+    private @NotNull CompletableFuture<Void> exportHistory(
+            final @NotNull Context ctx,
+            final long afterSeq,
+            final int limit)
+            throws TooManyRequestsException {
+        final int pageSize = Math.min(limit, TransferHistory.PAGE_SIZE);
+        return databaseExecutor.supply(() -> TransferHistory.readPage(afterSeq, pageSize)).thenCompose(page -> {
+            try {
+                page.writeTo(ctx.res.getOutputStream());
+                if (page.getSize() < pageSize || page.getSize() == limit) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return exportHistory(ctx, page.getLastSeq(), limit - page.getSize());
+            } catch (IOException | TooManyRequestsException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Handles completion of a streamed response. If it's failed after status is sent, connection is aborted
+     * without the last chunk, so the client sees the stream incomplete rather than ended, otherwise the written
+     * part is discarded and the error is responded by exception handlers
+     *
+     * @param ctx     request context
+     * @param e       stream failure, {@code null} if the stream is complete
+     * @param message message to log if the stream is aborted
+     * @return nothing, so the response is not written again
+     * @throws CompletionException with the specified failure if the response is not committed yet
+     */
+    private static @Nullable Void abortStream(
+            final @NotNull Context ctx,
+            final @Nullable Throwable e,
+            final @NotNull String message) {
+        if (e == null) {
+            //noinspection ReturnOfNull
+            return null;
+        }
+        if (ctx.res.isCommitted()) {
+            LOGGER.error(message, e);
+            Request.getBaseRequest(ctx.req).getHttpChannel().abort(e);
+            //noinspection ReturnOfNull
+            return null;
+        }
+        ctx.res.resetBuffer();
+        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+
+    /**
+     * Reads account ids of an accounts query, JSON array of strings, duplicates are ignored
+     *
+     * @param body request body
+     * @return distinct account ids in the request order
+     * @throws InvalidRequestException if body is malformed or contains more ids than allowed
+     */
+    private @NotNull Set<String> readAccountIds(final @NotNull InputStream body) throws InvalidRequestException {
+        final Set<String> ids = new LinkedHashSet<>();
+        int count = 0;
+        try (final MappingIterator<String> iterator = ACCOUNT_ID_READER.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (count == queryMaxSize) {
+                    throw new InvalidRequestException("Query can't contain more than " + queryMaxSize + " ids!");
+                }
+                final String id = iterator.nextValue();
+                if (id == null || id.isEmpty()) {
+                    throw new InvalidRequestException("Account id must not be empty!");
+                }
+                ids.add(id);
+                count++;
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidRequestException("Invalid request!", e);
+        }
+        return ids;
+    }
+
+    /**
+     * Reads transfers of a batch request, either JSON array or newline delimited JSON objects
+     *
+     * @param body request body
+     * @return transfers in the request order
+     * @throws InvalidRequestException if body is malformed or contains more transfers than allowed
+     */
+    private @NotNull List<Transfer> readTransfers(final @NotNull InputStream body) throws InvalidRequestException {
+        final List<Transfer> transfers = new ArrayList<>();
+        try (final MappingIterator<Transfer> iterator = TRANSFER_READER.readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (transfers.size() == batchMaxSize) {
+                    throw new InvalidRequestException("Batch can't contain more than " + batchMaxSize + " transfers!");
+                }
+                transfers.add(iterator.nextValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidRequestException("Invalid request!", e);
+        }
+        return transfers;
+    }
+
     /**
      * Performs exception jsonification
      *
      * @param e          exception to jsonify
-     * @param omitFrames whether include full stack frames or just message
+     * @param omitFrames whether include full stack frames or just message, frames are included only if
+     *                   enabled by {@code errors.stackFrames} property
      * @return String with json representation of the specified exception. If exception failed to serialize,
      * returns {@link Application.DEFAULT_EXC_SERIALIZATION}
      */
     @SuppressWarnings("JavadocReference")
-    private static String getExceptionInfo(final Exception e, final boolean omitFrames) {
+    private String getExceptionInfo(final Exception e, final boolean omitFrames) {
+        if (omitFrames || !stackFrames) {
+            return getErrorBody(e.getMessage());
+        }
         try {
-            final Object value = omitFrames
-                    ? ImmutableMap.of("error", e.getMessage())
-                    : ImmutableMap.of("error", e.getMessage(), "frames", ExceptionUtils.getStackFrames(e));
-            return JSON.writeValueAsString(value);
+            return JSON.writeValueAsString(
+                    ImmutableMap.of("error", e.getMessage(), "frames", ExceptionUtils.getStackFrames(e)));
         } catch (JsonProcessingException ex) {
             LOGGER.error("Can't serialize exception trace", ex);
             return DEFAULT_EXC_SERIALIZATION;
         }
     }
+
+    /**
+     * Builds error body from a template without object mapping
+     *
+     * @param message error message
+     * @return String with json object containing only error message
+     */
+    private static @NotNull String getErrorBody(final @Nullable String message) {
+        if (message == null) {
+            return NULL_ERROR_BODY;
+        }
+        final char[] quoted = JsonStringEncoder.getInstance().quoteAsString(message);
+        return new StringBuilder(ERROR_BODY_PREFIX.length() + quoted.length + ERROR_BODY_SUFFIX.length())
+                .append(ERROR_BODY_PREFIX)
+                .append(quoted)
+                .append(ERROR_BODY_SUFFIX)
+                .toString();
+    }
 }
@@ -0,0 +1,18 @@
+package io.trofiv.revolut;
+
+import com.google.inject.Singleton;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Ledger engine which applies every transfer as a separate database transaction of two statements doing
+ * the arithmetic in the database: a debit guarded by the funds check and a credit, so accounts are neither
+ * read nor locked before the update
+ */
+@Singleton
+public class AtomicLedgerEngine extends JdbcLedgerEngine {
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        transfer.makeAtomicTransfer();
+    }
+}
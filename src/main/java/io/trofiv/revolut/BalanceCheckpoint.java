@@ -0,0 +1,119 @@
+package io.trofiv.revolut;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary file with amounts of all accounts and the position of these amounts in the history of changes,
+ * e.g. the sequence number of the last transfer reflected in them. File is written next to its final location
+ * and moved over it atomically, so a checkpoint is either the previous one or a complete new one.
+ * File ends with a checksum of its content, which is verified on read
+ */
+@SuppressWarnings("UtilityClassCanBeEnum")
+final class BalanceCheckpoint {
+    private static final int MAGIC = 0x4C424350;
+    private static final int FORMAT_VERSION = 1;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private BalanceCheckpoint() {
+    }
+
+    /**
+     * @param file     checkpoint file to replace
+     * @param position position of the amounts in the history of changes
+     * @param ids      account ids
+     * @param amounts  account amounts in {@link Money} minor units in the same order as ids
+     * @throws IOException if checkpoint can't be written, the previous checkpoint is kept in this case
+     */
+    static void write(
+            final @NotNull Path file,
+            final long position,
+            final @NotNull String[] ids,
+            final @NotNull long[] amounts)
+            throws IOException {
+        final Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        final CRC32 crc = new CRC32();
+        try (final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            // stream is closed with the channel
+            final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(position);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                final byte[] id = ids[i].getBytes(StandardCharsets.UTF_8);
+                out.writeShort(id.length);
+                out.write(id);
+                out.writeLong(amounts[i]);
+            }
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            // checkpoint has to be durable before log segments reflected in it are removed
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the whole checkpoint through a read-only memory mapping, so the content is neither copied
+     * to the heap nor read with separate system calls
+     *
+     * @param file    checkpoint file
+     * @param amounts receives account amounts in {@link Money} minor units by account id
+     * @return position of the amounts in the history of changes, {@code 0} if there is no checkpoint
+     * @throws IOException if checkpoint can't be read or is corrupted
+     */
+    static long read(final @NotNull Path file, final @NotNull Map<String, Long> amounts) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        final ByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final int checksumOffset = buffer.limit() - Integer.BYTES;
+        if (checksumOffset < 0) {
+            throw new IOException("Checkpoint " + file + " is truncated");
+        }
+        final ByteBuffer content = buffer.duplicate();
+        content.limit(checksumOffset);
+        final CRC32 crc = new CRC32();
+        crc.update(content);
+        if ((int) crc.getValue() != buffer.getInt(checksumOffset)) {
+            throw new IOException("Checkpoint " + file + " is corrupted");
+        }
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Checkpoint " + file + " has unknown format");
+            }
+            final long position = buffer.getLong();
+            final int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                final byte[] id = new byte[buffer.getShort()];
+                buffer.get(id);
+                amounts.put(new String(id, StandardCharsets.UTF_8), buffer.getLong());
+            }
+            return position;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Checkpoint " + file + " is truncated", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.trofiv.revolut;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * State kept for a physical pooled connection across checkouts: statements prepared on it and transaction policy
+ * applied to it. Both are applied to the physical connection rather than the pool proxy, so the pool neither closes
+ * the statements nor resets the policy on return, and a connection checked out with the policy it already has needs
+ * no JDBC calls. Policy must be applied only with {@link #setPolicy}: settings changed with the pool proxy are reset
+ * by the pool on return without this state knowing it. A connection is used by a single thread at a time, so the state
+ * itself isn't synchronized
+ */
+final class ConnectionState {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final ConcurrentMap<Connection, ConnectionState> STATES = new ConcurrentHashMap<>();
+    private static final int UNKNOWN_ISOLATION = -1;
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private int isolationLevel = UNKNOWN_ISOLATION;
+    private boolean readOnly;
+
+    private ConnectionState(final Connection connection) throws SQLException {
+        this.connection = connection;
+        readOnly = connection.isReadOnly();
+    }
+
+    /**
+     * Returns state of the physical connection behind the specified one, states of closed connections are dropped
+     * when a new connection is seen, so they don't outlive connections evicted from the pool for long
+     *
+     * @param conn pooled or physical connection
+     * @return state of the physical connection
+     * @throws SQLException if the connection can't be unwrapped
+     */
+    static @NotNull ConnectionState of(final @NotNull Connection conn) throws SQLException {
+        final Connection physical = conn.unwrap(Connection.class);
+        final ConnectionState state = STATES.get(physical);
+        if (state != null) {
+            return state;
+        }
+        for (final Connection known : STATES.keySet()) {
+            if (known.isClosed()) {
+                STATES.remove(known);
+            }
+        }
+        final ConnectionState created = new ConnectionState(physical);
+        STATES.put(physical, created);
+        return created;
+    }
+
+    /**
+     * Returns statement for the specified SQL, prepared once per connection. Returned statement is owned
+     * by the connection and must not be closed, its result sets should be closed as usual
+     *
+     * @param sql statement SQL, should be a constant
+     * @return prepared statement
+     * @throws SQLException if the statement can't be prepared
+     */
+    @NotNull PreparedStatement prepare(final @NotNull String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps == null) {
+            ps = connection.prepareStatement(sql);
+            statements.put(sql, ps);
+            Metrics.STATEMENTS_PREPARED.increment();
+        }
+        return ps;
+    }
+
+    /**
+     * Applies transaction policy settings which differ from the ones the connection already has.
+     * Auto commit is read from the connection since it's cheap and can be changed with the pool proxy as well
+     *
+     * @throws SQLException if any setting can't be applied
+     */
+    void setPolicy(final int isolationLevel, final boolean autoCommit, final boolean readOnly) throws SQLException {
+        if (this.readOnly != readOnly) {
+            connection.setReadOnly(readOnly);
+            this.readOnly = readOnly;
+            Metrics.POLICY_CHANGES.increment();
+        }
+        if (connection.getAutoCommit() != autoCommit) {
+            connection.setAutoCommit(autoCommit);
+            Metrics.POLICY_CHANGES.increment();
+        }
+        if (this.isolationLevel != isolationLevel) {
+            connection.setTransactionIsolation(isolationLevel);
+            this.isolationLevel = isolationLevel;
+            Metrics.POLICY_CHANGES.increment();
+        }
+    }
+
+    /**
+     * Prepares the connection to be returned to the pool: since the pool doesn't know the connection has auto
+     * commit disabled, a transaction left unfinished is rolled back here. Other settings are kept for the next checkout
+     *
+     * @param failed whether the transaction was abandoned because of an error, so its rollback is counted
+     * @throws SQLException if rollback fails
+     */
+    void release(final boolean failed) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            connection.rollback();
+            if (failed) {
+                LOGGER.debug("Rolled back transaction");
+                Metrics.ROLLBACKS.increment();
+            }
+        }
+    }
+}
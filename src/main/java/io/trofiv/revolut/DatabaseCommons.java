@@ -4,12 +4,12 @@ import com.google.inject.Inject;
 import com.pivovarit.function.ThrowingFunction;
 import io.trofiv.revolut.exception.GenericException;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 /**
@@ -29,7 +29,8 @@ public final class DatabaseCommons {
      * Auto closeable wrapper for simplified execution in SQL context with specified rollback and commit policies
      *
      * @param function          function to run in SQL context
-     * @param rollbackBehaviour whether to do a rollback if unhandled {@link Exception} occured
+     * @param rollbackBehaviour whether a transaction left unfinished by an exception is counted as rolled back,
+     *                          unfinished transactions are always rolled back when the connection is released
      * @param commitBehavior    whether to do a commit after successful {@code function} execution
      * @param <T>               return type if a {@code function}
      * @return a value returned by {@code function}
@@ -40,30 +41,51 @@ public final class DatabaseCommons {
             final RollbackBehaviour rollbackBehaviour,
             final CommitBehaviour commitBehavior)
             throws GenericException {
-        Connection connection = null;
+        final long start = System.nanoTime();
         //noinspection StaticVariableUsedBeforeInitialization
         try (final Connection conn = databaseService.getConnection()) {
-            connection = conn;
-            final T result = function.apply(conn);
-            if (commitBehavior.value) {
-                connection.commit();
+            final ConnectionState state = ConnectionState.of(conn);
+            Throwable failure = null;
+            try {
+                final T result = function.apply(conn);
+                if (commitBehavior.value) {
+                    conn.commit();
+                }
+                return result;
+            } catch (Throwable e) {
+                failure = e;
+                throw e;
+            } finally {
+                // unfinished transaction is rolled back before the connection is returned to the pool
+                try {
+                    state.release(failure != null && rollbackBehaviour.value);
+                } catch (SQLException | RuntimeException e) {
+                    if (failure == null) {
+                        throw e;
+                    }
+                    // release failure doesn't replace the failure of the function, e.g. a business rejection,
+                    // it's logged as well since stackless business exceptions don't record suppressed ones
+                    LOGGER.warn("Connection release failed after the transaction failure", e);
+                    failure.addSuppressed(e);
+                }
             }
-            return result;
         } catch (GenericException e) {
-            // business exceptions are rethrown without wrapping
-            LOGGER.error("Business error occurred", e);
-            doRollbackIfNeeded(rollbackBehaviour, connection, e);
+            // business exceptions are rethrown without wrapping, they are logged where raised,
+            // so the stack trace is not printed here
+            LOGGER.debug("Business error occurred: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
             LOGGER.error("Unhandled error occurred", e);
-            final GenericException exception = new GenericException("Unhandled error occurred", e);
-            doRollbackIfNeeded(rollbackBehaviour, connection, exception);
-            throw exception;
+            throw new GenericException("Unhandled error occurred", e);
+        } finally {
+            Metrics.CONNECTION_DURATION.recordNanos(System.nanoTime() - start);
         }
     }
 
     /**
-     * Configures SQL connection transaction policies
+     * Configures SQL connection transaction policies. Only the settings the pooled connection doesn't
+     * have yet are applied, the connection keeps them when it's returned to the pool. Transaction policy
+     * of pooled connections must not be changed with {@link Connection} setters directly
      *
      * @param connection     connection to configure
      * @param isolationLevel transaction isolation level
@@ -79,28 +101,27 @@ public final class DatabaseCommons {
             final boolean isReadOnly)
             throws GenericException {
         try {
-            connection.setReadOnly(isReadOnly);
-            connection.setAutoCommit(autoCommit.value);
-            connection.setTransactionIsolation(isolationLevel);
+            ConnectionState.of(connection).setPolicy(isolationLevel, autoCommit.value, isReadOnly);
         } catch (SQLException e) {
             LOGGER.error("Connection transaction isolation level set error", e);
             throw new GenericException("Connection transaction isolation level set error", e);
         }
     }
 
-    private static void doRollbackIfNeeded(
-            final @NotNull RollbackBehaviour rollbackBehaviour,
-            final @Nullable Connection connection,
-            final @NotNull GenericException exception) {
-        if (rollbackBehaviour.value && connection != null) {
-            try {
-                LOGGER.info("Rolling back transaction");
-                connection.rollback();
-            } catch (SQLException ex) {
-                LOGGER.warn("Rollback failed", ex);
-                exception.addSuppressed(ex);
-            }
-        }
+    /**
+     * Returns statement for the specified SQL prepared once per pooled connection and reused by every checkout
+     * of the connection. Returned statement must not be closed, its result sets should be closed as usual
+     *
+     * @param connection connection to prepare statement with
+     * @param sql        statement SQL, should be one of a fixed set of constants
+     * @return prepared statement owned by the connection
+     * @throws SQLException if statement can't be prepared
+     */
+    public static @NotNull PreparedStatement prepareCachedStatement(
+            final @NotNull Connection connection,
+            final @NotNull String sql)
+            throws SQLException {
+        return ConnectionState.of(connection).prepare(sql);
     }
 
     /**
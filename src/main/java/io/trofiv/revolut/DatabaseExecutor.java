@@ -0,0 +1,194 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.pivovarit.function.ThrowingSupplier;
+import io.trofiv.revolut.exception.TooManyRequestsException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs request handling which may block on the database, so application server threads never wait for JDBC.
+ * At most as many tasks run at once as the pool has connections, so a running task doesn't wait for a connection
+ * held by a queued one. At most {@code db.executor.queueSize} tasks wait to run, further requests are
+ * rejected, so a stalled database sheds load instead of piling up requests.
+ * <p>
+ * In {@code platform} mode tasks are run by a fixed pool of platform threads. In {@code virtual} mode every task
+ * gets its own virtual thread which waits for a permit of a fair semaphore, so waiting tasks cost no platform
+ * threads. Virtual threads are created reflectively, since the source level is Java 8, and require Java 21
+ */
+@Singleton
+public class DatabaseExecutor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final String PLATFORM_MODE = "platform";
+    private static final String VIRTUAL_MODE = "virtual";
+    private static final String THREAD_NAME_PREFIX = "db-executor-";
+
+    private final int threads;
+    private final @Nullable ThreadPoolExecutor executor;
+    private final @Nullable ThreadFactory virtualThreads;
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int maxPending;
+    private volatile boolean stopped;
+
+    /**
+     * @param threads   max number of running tasks, same as the max number of pooled connections
+     * @param queueSize max number of tasks waiting to run
+     * @param mode      either {@code platform} or {@code virtual}
+     * @throws IllegalArgumentException if mode is unknown or virtual threads are not supported by the runtime
+     */
+    @Inject
+    public DatabaseExecutor(
+            @Named("db.pool.maxSize") final int threads,
+            @Named("db.executor.queueSize") final int queueSize,
+            @Named("db.executor.mode") final String mode) {
+        this.threads = threads;
+        maxPending = threads + queueSize;
+        permits = new Semaphore(threads, true);
+        switch (mode) {
+            case PLATFORM_MODE:
+                executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueSize),
+                        new ThreadFactoryBuilder().setNameFormat(THREAD_NAME_PREFIX + "%d").setDaemon(true).build(),
+                        new ThreadPoolExecutor.AbortPolicy());
+                executor.prestartAllCoreThreads();
+                virtualThreads = null;
+                Metrics.registerGauge("db_executor_queued_tasks", "Requests waiting for a database executor thread",
+                        () -> executor.getQueue().size());
+                break;
+            case VIRTUAL_MODE:
+                executor = null;
+                virtualThreads = createVirtualThreadFactory();
+                Metrics.registerGauge("db_executor_queued_tasks", "Requests waiting for a database executor thread",
+                        permits::getQueueLength);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown database executor mode: " + mode);
+        }
+        LOGGER.info("Database executor runs up to {} tasks on {} threads", threads, mode);
+    }
+
+    /**
+     * Runs the task on an executor thread
+     *
+     * @param task task to run
+     * @param <T>  task result type
+     * @return future completed with the task result, or completed exceptionally with the exception thrown by the task
+     * @throws TooManyRequestsException if the queue is full
+     */
+    @NotNull <T> CompletableFuture<T> supply(final @NotNull ThrowingSupplier<T, ? extends Exception> task)
+            throws TooManyRequestsException {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        if (virtualThreads == null) {
+            supplyOnPlatformThread(task, result);
+        } else {
+            supplyOnVirtualThread(task, result, virtualThreads);
+        }
+        return result;
+    }
+
+    /**
+     * Runs already queued tasks and stops the executor, should be called once no more requests are accepted
+     */
+    void stop() {
+        stopped = true;
+        try {
+            if (executor != null) {
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } else if (permits.tryAcquire(threads, 1, TimeUnit.MINUTES)) {
+                // fair semaphore grants all permits only after the tasks waiting for them are run
+                permits.release(threads);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> void supplyOnPlatformThread(
+            final @NotNull ThrowingSupplier<T, ? extends Exception> task,
+            final @NotNull CompletableFuture<T> result)
+            throws TooManyRequestsException {
+        try {
+            //noinspection ConstantConditions
+            executor.execute(() -> run(task, result));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Database executor queue is full", e);
+            throw overloaded();
+        }
+    }
+
+    private <T> void supplyOnVirtualThread(
+            final @NotNull ThrowingSupplier<T, ? extends Exception> task,
+            final @NotNull CompletableFuture<T> result,
+            final @NotNull ThreadFactory threadFactory)
+            throws TooManyRequestsException {
+        if (stopped || pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            LOGGER.debug("Database executor queue is full");
+            throw overloaded();
+        }
+        threadFactory.newThread(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                pending.decrementAndGet();
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                run(task, result);
+            } finally {
+                permits.release();
+                pending.decrementAndGet();
+            }
+        }).start();
+    }
+
+    private static <T> void run(
+            final @NotNull ThrowingSupplier<T, ? extends Exception> task,
+            final @NotNull CompletableFuture<T> result) {
+        try {
+            result.complete(task.get());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static @NotNull TooManyRequestsException overloaded() {
+        return new TooManyRequestsException("Server is overloaded, retry later");
+    }
+
+    /**
+     * Builds {@code Thread.ofVirtual().name(prefix, 0).factory()}
+     *
+     * @throws IllegalArgumentException if the runtime doesn't support virtual threads
+     */
+    private static @NotNull ThreadFactory createVirtualThreadFactory() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.error("Virtual threads are not supported by Java {}", System.getProperty("java.version"), e);
+            throw new IllegalArgumentException("Virtual threads are not supported by Java "
+                    + System.getProperty("java.version") + ", Java 21 or later is required", e);
+        }
+    }
+}
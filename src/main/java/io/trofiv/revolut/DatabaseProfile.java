@@ -0,0 +1,72 @@
+package io.trofiv.revolut;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Embedded H2 tuning profiles selected by {@code db.profile}, every profile turns {@code db.url} with the database
+ * location into a JDBC URL with its settings, so {@code db.url} shouldn't specify them itself
+ */
+public enum DatabaseProfile {
+    /**
+     * Every commit is written to the database file before it returns, lock waits time out after 10 seconds
+     */
+    DURABLE("durable", false, ";MV_STORE=TRUE;WRITE_DELAY=0;LOCK_TIMEOUT=10000;CACHE_SIZE=65536"),
+    /**
+     * Commits are written to the database file up to 500 ms later, so the ones of the last 500 ms are lost if the
+     * process is killed. Page cache is 4 times larger and lock waits time out after 1 second
+     */
+    LOW_LATENCY("low-latency", false, ";MV_STORE=TRUE;WRITE_DELAY=500;LOCK_TIMEOUT=1000;CACHE_SIZE=262144"),
+    /**
+     * In-memory database named after the last segment of the database location, kept until the process exits
+     */
+    IN_MEMORY_TEST("in-memory-test", true, ";MV_STORE=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+
+    private static final String URL_PREFIX = "jdbc:h2:";
+    private static final String MEMORY_URL_PREFIX = URL_PREFIX + "mem:";
+
+    private final String name;
+    private final boolean inMemory;
+    private final String settings;
+
+    DatabaseProfile(final String name, final boolean inMemory, final String settings) {
+        this.name = name;
+        this.inMemory = inMemory;
+        this.settings = settings;
+    }
+
+    /**
+     * @param name profile name, one of {@code durable}, {@code low-latency} or {@code in-memory-test}
+     * @return profile with the specified name
+     * @throws IllegalArgumentException if there is no profile with the specified name
+     */
+    public static @NotNull DatabaseProfile fromName(final String name) {
+        for (final DatabaseProfile profile : values()) {
+            if (profile.name.equals(name)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unknown database profile: " + name);
+    }
+
+    /**
+     * @param url H2 JDBC URL with the database location, like {@code jdbc:h2:./accounts}
+     * @return JDBC URL of the database with the profile settings
+     * @throws IllegalArgumentException if the URL is not an H2 one
+     */
+    @NotNull String buildUrl(final @NotNull String url) {
+        if (!url.startsWith(URL_PREFIX)) {
+            throw new IllegalArgumentException("Not an H2 database URL: " + url);
+        }
+        if (!inMemory || url.startsWith(MEMORY_URL_PREFIX)) {
+            return url + settings;
+        }
+        final String location = url.substring(URL_PREFIX.length());
+        final int nameStart = Math.max(location.lastIndexOf('/'), location.lastIndexOf(':')) + 1;
+        return MEMORY_URL_PREFIX + location.substring(nameStart) + settings;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
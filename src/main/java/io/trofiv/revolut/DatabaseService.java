@@ -8,8 +8,16 @@ import java.sql.SQLException;
 /**
  * Interface for SQL connections retrieval. Default implementation is HikariCP
  */
-@SuppressWarnings({"ClassReferencesSubclass", "InterfaceMayBeAnnotatedFunctional"})
+@SuppressWarnings({"ClassReferencesSubclass", "InterfaceMayBeAnnotatedFunctional", "RedundantThrows"})
 @ImplementedBy(HikariDatabaseService.class)
 public interface DatabaseService {
     Connection getConnection() throws SQLException;
+
+    /**
+     * Opens connections in advance, so the first requests don't pay for it
+     *
+     * @throws SQLException if connections can't be opened
+     */
+    default void warmUp() throws SQLException {
+    }
 }
@@ -0,0 +1,187 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger engine which collects concurrent transfers for up to {@code ledger.groupCommitWindowMicros} or until
+ * {@code ledger.groupCommitMaxSize} transfers are collected and applies them as a single {@link TransferBatch}
+ * with per-item semantics, so a single database commit is shared by all of them
+ */
+@Singleton
+public class GroupCommitLedgerEngine extends JdbcLedgerEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final long IDLE_POLL_MICROS = TimeUnit.MILLISECONDS.toMicros(100);
+
+    private final long windowMicros;
+    private final int maxSize;
+    private final BlockingQueue<PendingTransfer> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService scheduler = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ledger-group-commit").setDaemon(true).build());
+    private volatile boolean stopped;
+
+    @Inject
+    public GroupCommitLedgerEngine(
+            @Named("ledger.groupCommitWindowMicros") final long windowMicros,
+            @Named("ledger.groupCommitMaxSize") final int maxSize) {
+        this.windowMicros = windowMicros;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void start() {
+        scheduler.execute(this::run);
+    }
+
+    /**
+     * Applies already collected transfers and stops the scheduler
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // transfers enqueued concurrently with stop
+        PendingTransfer pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new GenericException("Ledger is stopped"));
+        }
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        try {
+            transferAsync(transfer).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericException("Interrupted while waiting for " + transfer, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GenericException) {
+                throw (GenericException) e.getCause();
+            }
+            throw new GenericException("Failed to apply " + transfer, e.getCause());
+        }
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            transfer.validate();
+            if (stopped) {
+                throw new GenericException("Ledger is stopped");
+            }
+        } catch (GenericException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        queue.add(new PendingTransfer(transfer, result));
+        return result;
+    }
+
+    private void run() {
+        final List<PendingTransfer> group = new ArrayList<>(maxSize);
+        while (!stopped || !queue.isEmpty()) {
+            try {
+                collect(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Group commit scheduler is interrupted");
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first transfer, then collects more transfers until the window is over or the group is full
+     */
+    private void collect(final @NotNull List<PendingTransfer> group) throws InterruptedException {
+        final PendingTransfer first = queue.poll(IDLE_POLL_MICROS, TimeUnit.MICROSECONDS);
+        if (first == null) {
+            return;
+        }
+        group.add(first);
+        final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        while (group.size() < maxSize) {
+            queue.drainTo(group, maxSize - group.size());
+            final long remaining = deadline - System.nanoTime();
+            if (group.size() == maxSize || remaining <= 0) {
+                return;
+            }
+            final PendingTransfer next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+        }
+    }
+
+    /**
+     * Applies the group in a single transaction. If the whole transaction failed, e.g. due to a broken account,
+     * transfers are retried one by one so the failure is reported only to the transfers it belongs to
+     */
+    private void commit(final @NotNull List<PendingTransfer> group) {
+        final List<Transfer> transfers = new ArrayList<>(group.size());
+        for (final PendingTransfer pending : group) {
+            transfers.add(pending.transfer);
+        }
+        final List<TransferResult> results;
+        try {
+            results = new TransferBatch(transfers, BatchMode.PER_ITEM).execute();
+        } catch (GenericException e) {
+            LOGGER.warn("Group of {} transfers failed, applying them one by one", group.size(), e);
+            for (final PendingTransfer pending : group) {
+                try {
+                    pending.transfer.makeTransfer();
+                    pending.result.complete(null);
+                } catch (GenericException ex) {
+                    pending.result.completeExceptionally(ex);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            final GenericException cause = results.get(i).getCause();
+            if (cause == null) {
+                group.get(i).result.complete(null);
+            } else {
+                group.get(i).result.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static final class PendingTransfer {
+        private final Transfer transfer;
+        private final CompletableFuture<Void> result;
+
+        PendingTransfer(final @NotNull Transfer transfer, final @NotNull CompletableFuture<Void> result) {
+            this.transfer = transfer;
+            this.result = result;
+        }
+    }
+}
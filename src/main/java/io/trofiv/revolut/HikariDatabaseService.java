@@ -5,35 +5,107 @@ import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandles;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * HikariCP SQL connections pool
  */
 @Singleton
 public class HikariDatabaseService implements DatabaseService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
     private final HikariDataSource dataSource;
 
+    /**
+     * Connections are validated with JDBC4 {@link Connection#isValid(int)}
+     *
+     * @param dbUrl                    H2 JDBC URL with the database location only
+     * @param profile                  H2 tuning profile name, see {@link DatabaseProfile}
+     * @param maxSize                  max number of pooled connections
+     * @param minIdle                  min number of idle connections kept by the pool
+     * @param leakDetectionThresholdMs time a connection can be out of the pool before it is reported
+     *                                 as a possible leak, {@code 0} disables leak detection
+     * @param validationTimeoutMs      max time connection validation can take
+     */
     @Inject
+    @SuppressWarnings("ConstructorWithTooManyParameters")
     public HikariDatabaseService(
             @Named("db.classname") final String dbClassName,
-            @Named("db.connectionTestString") final String connectionTestString,
             @Named("db.url") final String dbUrl,
+            @Named("db.profile") final String profile,
             @Named("db.user") final String dbUser,
-            @Named("db.password") final String dbPassword) {
+            @Named("db.password") final String dbPassword,
+            @Named("db.pool.maxSize") final int maxSize,
+            @Named("db.pool.minIdle") final int minIdle,
+            @Named("db.pool.leakDetectionThresholdMs") final long leakDetectionThresholdMs,
+            @Named("db.pool.validationTimeoutMs") final long validationTimeoutMs) {
         final HikariConfig config = new HikariConfig();
         config.setDataSourceClassName(dbClassName);
-        config.setConnectionTestQuery(connectionTestString);
-        config.addDataSourceProperty("URL", dbUrl);
+        final String url = DatabaseProfile.fromName(profile).buildUrl(dbUrl);
+        LOGGER.info("Database profile: {}, URL: {}", profile, url);
+        config.addDataSourceProperty("URL", url);
         config.addDataSourceProperty("user", dbUser);
         config.addDataSourceProperty("password", dbPassword);
+        config.setMaximumPoolSize(maxSize);
+        config.setMinimumIdle(minIdle);
+        config.setLeakDetectionThreshold(leakDetectionThresholdMs);
+        config.setValidationTimeout(validationTimeoutMs);
+        config.setMetricsTrackerFactory(HikariDatabaseService::createMetricsTracker);
         dataSource = new HikariDataSource(config);
     }
 
+    private static IMetricsTracker createMetricsTracker(final String poolName, final PoolStats poolStats) {
+        Metrics.registerGauge("db_pool_connections_active", "Pooled connections in use",
+                poolStats::getActiveConnections);
+        Metrics.registerGauge("db_pool_connections_idle", "Idle pooled connections",
+                poolStats::getIdleConnections);
+        Metrics.registerGauge("db_pool_connections_total", "Open pooled connections",
+                poolStats::getTotalConnections);
+        Metrics.registerGauge("db_pool_connections_pending", "Threads waiting for a pooled connection",
+                poolStats::getPendingThreads);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+                Metrics.POOL_ACQUIRE.recordNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                Metrics.POOL_TIMEOUTS.increment();
+            }
+        };
+    }
+
     @Override
     public Connection getConnection() throws SQLException {
         return dataSource.getConnection();
     }
+
+    /**
+     * Checks out min idle connections at once, so the pool has to open all of them
+     */
+    @Override
+    public void warmUp() throws SQLException {
+        final int size = dataSource.getMinimumIdle();
+        final List<Connection> connections = new ArrayList<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                connections.add(dataSource.getConnection());
+            }
+        } finally {
+            for (final Connection connection : connections) {
+                connection.close();
+            }
+        }
+        LOGGER.info("Connection pool is warmed up with {} connections", size);
+    }
 }
@@ -0,0 +1,127 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.exception.TooManyRequestsException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialized lane submitting transfers of {@link HotAccounts hot accounts} one by one from a dedicated thread in
+ * {@code lane} mode. Transfers of a hot account then don't queue on its row lock holding pooled connections and
+ * database executor threads, which stay available for the transfers of other accounts. Transfers are submitted with
+ * {@link LedgerEngine#transferAsync}, so engines which apply transfers asynchronously share their journal flushes and
+ * commits between the lane transfers, and engines applying transfers in the order they are submitted apply transfers
+ * of every account in the lane order. At most {@code db.executor.queueSize} transfers are in the lane until they are
+ * applied, further ones are rejected like the ones exceeding database executor queue
+ */
+@Singleton
+public class HotAccountLane {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final int queueSize;
+    private final Semaphore permits;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param queueSize max number of transfers in the lane
+     */
+    @Inject
+    public HotAccountLane(@Named("db.executor.queueSize") final int queueSize) {
+        this.queueSize = queueSize;
+        permits = new Semaphore(queueSize);
+        // queue is bounded by permits
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("hot-account-lane").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        Metrics.registerGauge("hot_account_lane_queued_transfers", "Transfers in the hot account lane not applied yet",
+                () -> this.queueSize - permits.availablePermits());
+    }
+
+    /**
+     * @param transfer transfer to apply
+     * @return whether the transfer should be applied by the lane
+     */
+    boolean accepts(final @NotNull Transfer transfer) {
+        return HotAccounts.isLaneMode() && (HotAccounts.isHot(transfer.getSourceAccountId())
+                || HotAccounts.isHot(transfer.getTargetAccountId()));
+    }
+
+    /**
+     * Submits the transfer to the ledger engine from the lane thread once all transfers queued before it are
+     * submitted, without waiting for them to be applied. Time spent waiting in the lane counts as contention
+     * of the transfer accounts, so they stay hot while the lane is busy
+     *
+     * @param ledgerEngine engine to apply the transfer with
+     * @param transfer     transfer to apply
+     * @return future completed once transfer is durably applied
+     * @throws TooManyRequestsException if the lane is full
+     */
+    @NotNull CompletableFuture<Void> transfer(
+            final @NotNull LedgerEngine ledgerEngine,
+            final @NotNull Transfer transfer)
+            throws TooManyRequestsException {
+        if (!permits.tryAcquire()) {
+            LOGGER.debug("Hot account lane is full");
+            throw overloaded();
+        }
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                HotAccounts.recordContention(transfer.getSourceAccountId(), transfer.getTargetAccountId(),
+                        System.nanoTime() - queuedAt, false);
+                final CompletableFuture<Void> applied;
+                try {
+                    applied = ledgerEngine.transferAsync(transfer);
+                } catch (RuntimeException e) {
+                    permits.release();
+                    result.completeExceptionally(e);
+                    return;
+                }
+                applied.whenComplete((ignored, e) -> {
+                    permits.release();
+                    if (e == null) {
+                        result.complete(null);
+                    } else {
+                        result.completeExceptionally(e);
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            LOGGER.debug("Hot account lane is stopped", e);
+            throw overloaded();
+        }
+        return result;
+    }
+
+    /**
+     * Submits already queued transfers and stops the lane, should be called once no more requests are accepted
+     * and before the ledger engine is stopped
+     */
+    void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static @NotNull TooManyRequestsException overloaded() {
+        return new TooManyRequestsException("Server is overloaded, retry later");
+    }
+}
@@ -0,0 +1,274 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects hot accounts, the ones most of the transfer contention is attributed to, with a space-saving top-K sketch
+ * of time lost to contention: row lock waits of locking transfers, failed attempts of optimistic transfers and time
+ * spent waiting in {@link HotAccountLane}. Time is attributed to both accounts of a transfer, since it's not known
+ * which one was contended, and an account receiving most of the transfers accumulates it much faster than its
+ * counterparties. Contention is recorded once transfer locks are released, samples shorter than
+ * {@code accounts.hot.minSampleMicros} are dropped and the rest are summed per account in a concurrent map without
+ * any shared lock. Sums of up to {@code accounts.hot.trackedAccounts} times {@link #SAMPLED_ACCOUNTS_FACTOR} accounts
+ * are kept per window, further accounts are dropped until the window ends. At the end of every
+ * {@code accounts.hot.windowMs} window the sums are added to the sketch tracking up to
+ * {@code accounts.hot.trackedAccounts} accounts, the accounts with at least {@code accounts.hot.thresholdMicros}
+ * of guaranteed contention become hot until the end of the next window, and all counters are halved, so the sketch
+ * follows shifting traffic. Contention is recorded in {@code detect} and {@code lane} modes, transfers of hot
+ * accounts are applied by {@link HotAccountLane} in {@code lane} mode only
+ */
+@SuppressWarnings("UtilityClassCanBeEnum")
+public final class HotAccounts {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    static final String OFF_MODE = "off";
+    static final String DETECT_MODE = "detect";
+    static final String LANE_MODE = "lane";
+    private static final int SAMPLED_ACCOUNTS_FACTOR = 16;
+
+    // sketch is guarded by the class lock and is only updated once per window
+    private static final Map<String, Counter> COUNTERS = new HashMap<>();
+    private static final AtomicLong WINDOW_END = new AtomicLong();
+    private static volatile ConcurrentMap<String, Sample> samples = new ConcurrentHashMap<>();
+    private static volatile String mode = OFF_MODE;
+    private static volatile boolean recording;
+    private static volatile boolean lane;
+    private static volatile Set<String> hot = Collections.emptySet();
+    private static volatile long minSampleNanos;
+    private static volatile int maxSampledAccounts;
+    private static volatile long windowNanos;
+    private static int trackedAccounts;
+    private static long thresholdNanos;
+
+    private HotAccounts() {
+    }
+
+    /**
+     * Configures detection, called once by the injector. Detection is off until configured
+     *
+     * @param mode            one of {@code off}, {@code detect} or {@code lane}
+     * @param trackedAccounts max number of accounts tracked by the sketch
+     * @param thresholdMicros decayed contention of an account which makes it hot
+     * @param minSampleMicros min contention of a single transfer which is recorded
+     * @param windowMs        interval between hot accounts updates
+     * @throws IllegalArgumentException if mode is unknown or no accounts are tracked
+     */
+    @Inject
+    static synchronized void configure(
+            @Named("accounts.hot.mode") final String mode,
+            @Named("accounts.hot.trackedAccounts") final int trackedAccounts,
+            @Named("accounts.hot.thresholdMicros") final long thresholdMicros,
+            @Named("accounts.hot.minSampleMicros") final long minSampleMicros,
+            @Named("accounts.hot.windowMs") final long windowMs) {
+        if (!OFF_MODE.equals(mode) && !DETECT_MODE.equals(mode) && !LANE_MODE.equals(mode)) {
+            throw new IllegalArgumentException("Unknown hot accounts mode: " + mode);
+        }
+        if (trackedAccounts < 1) {
+            throw new IllegalArgumentException("At least one hot account should be tracked: " + trackedAccounts);
+        }
+        HotAccounts.trackedAccounts = trackedAccounts;
+        maxSampledAccounts = trackedAccounts * SAMPLED_ACCOUNTS_FACTOR;
+        thresholdNanos = TimeUnit.MICROSECONDS.toNanos(thresholdMicros);
+        minSampleNanos = TimeUnit.MICROSECONDS.toNanos(minSampleMicros);
+        windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        WINDOW_END.set(System.nanoTime() + windowNanos);
+        samples = new ConcurrentHashMap<>();
+        COUNTERS.clear();
+        hot = Collections.emptySet();
+        HotAccounts.mode = mode;
+        recording = !OFF_MODE.equals(mode);
+        lane = LANE_MODE.equals(mode);
+        LOGGER.info("Hot accounts mode: {}, tracked accounts: {}, threshold: {} us per {} ms, min sample: {} us",
+                mode, trackedAccounts, thresholdMicros, windowMs, minSampleMicros);
+    }
+
+    /**
+     * @return {@code off}, {@code detect} or {@code lane}
+     */
+    static @NotNull String getMode() {
+        return mode;
+    }
+
+    /**
+     * @return whether transfers of hot accounts should be applied by {@link HotAccountLane}
+     */
+    static boolean isLaneMode() {
+        return lane;
+    }
+
+    /**
+     * @param id account id
+     * @return whether account was hot in the last completed window, lock free
+     */
+    static boolean isHot(final @NotNull String id) {
+        return hot.contains(id);
+    }
+
+    /**
+     * Attributes time lost to contention by a transfer to both its accounts, should be called once the transfer
+     * doesn't hold any locks. Doesn't take any shared locks unless the current window has ended
+     *
+     * @param sourceId    transfer source account id
+     * @param targetId    transfer target account id
+     * @param nanos       time the transfer waited for its accounts
+     * @param failedRetry whether the time was spent by a transfer attempt which has to be retried
+     */
+    static void recordContention(
+            final @NotNull String sourceId,
+            final @NotNull String targetId,
+            final long nanos,
+            final boolean failedRetry) {
+        if (!recording) {
+            return;
+        }
+        if (nanos >= minSampleNanos) {
+            final ConcurrentMap<String, Sample> current = samples;
+            addSample(current, sourceId, nanos, failedRetry);
+            addSample(current, targetId, nanos, failedRetry);
+        }
+        final long end = WINDOW_END.get();
+        final long now = System.nanoTime();
+        if (now - end >= 0 && WINDOW_END.compareAndSet(end, now + windowNanos)) {
+            rollOver();
+        }
+    }
+
+    /**
+     * @return tracked accounts by decreasing contention, contention of the current window is not added yet
+     */
+    static synchronized @NotNull List<Map<String, Object>> getTopAccounts() {
+        final List<Map.Entry<String, Counter>> entries = new ArrayList<>(COUNTERS.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().nanos, a.getValue().nanos));
+        final List<Map<String, Object>> top = new ArrayList<>(entries.size());
+        for (final Map.Entry<String, Counter> entry : entries) {
+            final Counter counter = entry.getValue();
+            top.add(ImmutableMap.of(
+                    "id", entry.getKey(),
+                    "contentionMicros", TimeUnit.NANOSECONDS.toMicros(counter.nanos),
+                    "errorMicros", TimeUnit.NANOSECONDS.toMicros(counter.errorNanos),
+                    "failedRetries", counter.failedRetries,
+                    "hot", isHot(entry.getKey())));
+        }
+        return top;
+    }
+
+    /**
+     * Ends the current window: adds contention sampled within it to the sketch, updates hot accounts and halves
+     * all counters, dropping the ones decayed to zero. Samples recorded concurrently with the window end may be lost
+     */
+    static synchronized void rollOver() {
+        final ConcurrentMap<String, Sample> sampled = samples;
+        samples = new ConcurrentHashMap<>();
+        // sums are read once, since late samples may still be added to them
+        final Map<String, Long> sampledNanos = new HashMap<>(sampled.size() * 2);
+        sampled.forEach((id, sample) -> sampledNanos.put(id, sample.nanos.sum()));
+        final List<String> ids = new ArrayList<>(sampledNanos.keySet());
+        // most contended accounts are added first, so they don't inherit errors of the less contended ones
+        ids.sort((a, b) -> Long.compare(sampledNanos.get(b), sampledNanos.get(a)));
+        for (final String id : ids) {
+            add(id, sampledNanos.get(id), sampled.get(id).failedRetries.sum());
+        }
+        final ImmutableSet.Builder<String> newHot = ImmutableSet.builder();
+        final Iterator<Map.Entry<String, Counter>> it = COUNTERS.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Counter> entry = it.next();
+            final Counter counter = entry.getValue();
+            if (counter.nanos - counter.errorNanos >= thresholdNanos) {
+                newHot.add(entry.getKey());
+            }
+            counter.nanos >>= 1;
+            counter.errorNanos >>= 1;
+            counter.failedRetries >>= 1;
+            if (counter.nanos == 0) {
+                it.remove();
+            }
+        }
+        final Set<String> previous = hot;
+        hot = newHot.build();
+        if (!hot.equals(previous)) {
+            LOGGER.info("Hot accounts: {}", hot);
+        }
+    }
+
+    private static void addSample(
+            final @NotNull ConcurrentMap<String, Sample> current,
+            final @NotNull String id,
+            final long nanos,
+            final boolean failedRetry) {
+        Sample sample = current.get(id);
+        if (sample == null) {
+            if (current.size() >= maxSampledAccounts) {
+                return;
+            }
+            sample = current.computeIfAbsent(id, ignored -> new Sample());
+        }
+        sample.nanos.add(nanos);
+        if (failedRetry) {
+            sample.failedRetries.increment();
+        }
+    }
+
+    /**
+     * Space-saving update: an untracked account replaces the one with the least contention when the sketch is full
+     * and inherits its contention as the error bound
+     */
+    private static void add(final @NotNull String id, final long nanos, final long failedRetries) {
+        Counter counter = COUNTERS.get(id);
+        if (counter == null) {
+            if (COUNTERS.size() < trackedAccounts) {
+                counter = new Counter(0);
+            } else {
+                Map.Entry<String, Counter> min = null;
+                for (final Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+                    if (min == null || entry.getValue().nanos < min.getValue().nanos) {
+                        min = entry;
+                    }
+                }
+                //noinspection ConstantConditions
+                COUNTERS.remove(min.getKey());
+                counter = new Counter(min.getValue().nanos);
+            }
+            COUNTERS.put(id, counter);
+        }
+        counter.nanos += nanos;
+        counter.failedRetries += failedRetries;
+    }
+
+    /**
+     * Contention of an account sampled within the current window
+     */
+    private static final class Sample {
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder failedRetries = new LongAdder();
+    }
+
+    private static final class Counter {
+        private long nanos;
+        private long errorNanos;
+        private long failedRetries;
+
+        private Counter(final long errorNanos) {
+            nanos = errorNanos;
+            this.errorNanos = errorNanos;
+        }
+    }
+}
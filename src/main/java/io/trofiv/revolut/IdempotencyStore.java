@@ -0,0 +1,378 @@
+package io.trofiv.revolut;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.DuplicateRequestException;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Outcomes of applied requests by idempotency key. Keys are persisted to {@code IDEMPOTENCY_KEYS} table by
+ * the transaction applying the request, or by a separate transaction once the request is rejected,
+ * recent outcomes are indexed in memory for at least {@code idempotency.ttlMs} unless more than
+ * {@code idempotency.maxKeys} keys are recorded within it. Index keeps 128-bit hashes of the keys in primitive
+ * open addressing tables of two generations, a generation is cleared and reused once it's older than ttl or full,
+ * so indexed keys don't retain any objects. Only the hash of the looked up key is allocated per lookup
+ */
+@Singleton
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlResolve"})
+public class IdempotencyStore {
+    /**
+     * Status returned for keys without a recorded outcome
+     */
+    static final int MISSING = 0;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final String UNIQUE_VIOLATION = "23505";
+    private static final HashFunction HASH = Hashing.murmur3_128();
+    private static final boolean READ_ONLY = true;
+    private static final boolean READ_WRITE = false;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Set<String> applying = ConcurrentHashMap.newKeySet();
+
+    @Inject
+    public IdempotencyStore(
+            @Named("idempotency.ttlMs") final long ttlMs,
+            @Named("idempotency.maxKeys") final int maxKeys) {
+        final int segmentMaxKeys = Math.max(1, maxKeys / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(TimeUnit.MILLISECONDS.toNanos(ttlMs), segmentMaxKeys);
+        }
+    }
+
+    /**
+     * @param key idempotency key
+     * @throws InvalidRequestException if key is empty or too long to be stored
+     */
+    static void validate(final @NotNull String key) throws InvalidRequestException {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException(
+                    "Idempotency key must have from 1 to " + MAX_KEY_LENGTH + " characters!");
+        }
+    }
+
+    /**
+     * Returns recorded outcome of the key from the memory index
+     *
+     * @param key idempotency key
+     * @return response status of the request applied with the key, {@link #MISSING} if it's not indexed
+     */
+    int getStatus(final @NotNull String key) {
+        final byte[] hash = HASH.hashString(key, StandardCharsets.UTF_8).asBytes();
+        final long high = getHigh(hash);
+        return getSegment(high).get(high, getLow(hash));
+    }
+
+    /**
+     * Records outcome of the key in the memory index
+     *
+     * @param key    idempotency key
+     * @param status response status of the request applied with the key
+     */
+    void put(final @NotNull String key, final int status) {
+        final byte[] hash = HASH.hashString(key, StandardCharsets.UTF_8).asBytes();
+        final long high = getHigh(hash);
+        getSegment(high).put(high, getLow(hash), status);
+    }
+
+    /**
+     * Marks the key as being applied by this application instance, so concurrent retries are rejected
+     * without reaching the ledger
+     *
+     * @param key idempotency key
+     * @throws DuplicateRequestException if a request with the same key is being applied
+     */
+    void startApplying(final @NotNull String key) throws DuplicateRequestException {
+        if (!applying.add(key)) {
+            throw new DuplicateRequestException("Request with idempotency key " + key + " is already used");
+        }
+    }
+
+    /**
+     * Records outcome of the key in the memory index and unmarks it as being applied
+     *
+     * @param key    idempotency key
+     * @param status response status of the request applied with the key, {@link #MISSING} if it's failed
+     */
+    void finishApplying(final @NotNull String key, final int status) {
+        if (status != MISSING) {
+            put(key, status);
+        }
+        applying.remove(key);
+    }
+
+    /**
+     * Returns recorded outcome of the key from the memory index or from the database if it's not indexed
+     *
+     * @param key idempotency key
+     * @return response status of the request applied with the key, {@link #MISSING} if there is no committed
+     * outcome, e.g. the request is still being applied
+     * @throws GenericException if any database-related error has occurred
+     */
+    int load(final @NotNull String key) throws GenericException {
+        final int indexed = getStatus(key);
+        if (indexed != MISSING) {
+            return indexed;
+        }
+        final int stored = executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+            return selectStatus(conn, key);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        if (stored != MISSING) {
+            put(key, stored);
+        }
+        return stored;
+    }
+
+    /**
+     * Returns status of a rejection the same request is rejected with again, so it's recorded as the outcome
+     * of the key. Failures which may not repeat, e.g. database errors or overload, have no recorded outcome
+     *
+     * @param e failure of the request, {@code null} if it's not failed
+     * @return response status of the rejection, {@link #MISSING} if the failure isn't a rejection
+     */
+    static int getRejectionStatus(final @Nullable Throwable e) {
+        if (e instanceof InvalidRequestException || e instanceof NoSuchAccountException
+                || e instanceof NotEnoughMoneyException) {
+            return TransferResult.failure((GenericException) e).getStatus();
+        }
+        return MISSING;
+    }
+
+    /**
+     * Persists rejection outcome of the key in its own transaction, since the key inserted by the transaction
+     * applying the request is rolled back with it. Keys of batch transfers are already recorded with the outcome
+     * by the batch transaction, so the recorded outcome is kept
+     *
+     * @param key    idempotency key
+     * @param status response status of the rejection
+     * @return recorded response status of the key
+     * @throws GenericException if any database-related error has occurred
+     */
+    int storeRejection(final @NotNull String key, final int status) throws GenericException {
+        return executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_WRITE);
+            try {
+                insertKey(conn, key, status);
+                return status;
+            } catch (DuplicateRequestException e) {
+                final int stored = selectStatus(conn, key);
+                LOGGER.debug("Outcome {} of idempotency key {} is already recorded", stored, key);
+                return stored == MISSING ? status : stored;
+            }
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+
+    /**
+     * Records outcome of the key using specified sql connection, should be called by the transaction applying
+     * the request before it changes anything, so a duplicate request fails before touching accounts
+     *
+     * @param conn   SQL connection to use
+     * @param key    idempotency key
+     * @param status response status of the request applied with the key
+     * @throws DuplicateRequestException if the key is already recorded or is being recorded concurrently
+     * @throws GenericException          if any other database-related error has occurred
+     */
+    static void insertKey(
+            final @NotNull Connection conn,
+            final @NotNull String key,
+            final int status)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO IDEMPOTENCY_KEYS VALUES (?, ?, CURRENT_TIMESTAMP())")) {
+            ps.setString(1, key);
+            ps.setInt(2, status);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                LOGGER.debug("Idempotency key {} is already used", key);
+                throw new DuplicateRequestException("Request with idempotency key " + key + " is already used");
+            }
+            LOGGER.error("Idempotency key insert failed for key {}", key, e);
+            throw new GenericException("Idempotency key insert failed for key " + key, e);
+        }
+    }
+
+    /**
+     * Replaces outcome of the key recorded by the transaction using specified sql connection
+     *
+     * @param conn   SQL connection of the transaction which inserted the key
+     * @param key    idempotency key
+     * @param status response status of the request applied with the key, {@link #MISSING} removes the key,
+     *               so the request can be retried with it
+     * @throws GenericException if any database-related error has occurred
+     */
+    static void updateKey(
+            final @NotNull Connection conn,
+            final @NotNull String key,
+            final int status)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(status == MISSING
+                ? "DELETE FROM IDEMPOTENCY_KEYS WHERE IDEMPOTENCY_KEY = ?"
+                : "UPDATE IDEMPOTENCY_KEYS SET STATUS = ? WHERE IDEMPOTENCY_KEY = ?")) {
+            if (status == MISSING) {
+                ps.setString(1, key);
+            } else {
+                ps.setInt(1, status);
+                ps.setString(2, key);
+            }
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.error("Idempotency key update failed for key {}", key, e);
+            throw new GenericException("Idempotency key update failed for key " + key, e);
+        }
+    }
+
+    private static int selectStatus(final @NotNull Connection conn, final @NotNull String key)
+            throws GenericException {
+        try (final PreparedStatement ps = conn.prepareStatement(
+                "SELECT STATUS FROM IDEMPOTENCY_KEYS WHERE IDEMPOTENCY_KEY = ?")) {
+            ps.setString(1, key);
+            try (final ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : MISSING;
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Idempotency key query failed for key {}", key, e);
+            throw new GenericException("Idempotency key query failed for key " + key, e);
+        }
+    }
+
+    private static long getHigh(final byte[] hash) {
+        return Longs.fromBytes(hash[0], hash[1], hash[2], hash[3], hash[4], hash[5], hash[6], hash[7]);
+    }
+
+    /**
+     * @return lower half of the hash, never {@code 0} since it marks empty slots
+     */
+    private static long getLow(final byte[] hash) {
+        return Longs.fromBytes(hash[8], hash[9], hash[10], hash[11], hash[12], hash[13], hash[14], hash[15]) | 1;
+    }
+
+    private @NotNull Segment getSegment(final long high) {
+        return segments[(int) (high >>> SEGMENT_SHIFT)];
+    }
+
+    /**
+     * Two generations of open addressing tables, every slot takes two longs of a key hash and a status.
+     * Slots are never removed one by one, so lookups don't need tombstones
+     */
+    private static final class Segment {
+        private final long ttlNanos;
+        private final int maxKeys;
+        private final int mask;
+        private long[] currentHashes;
+        private int[] currentStatuses;
+        private long[] previousHashes;
+        private int[] previousStatuses;
+        private int currentSize;
+        private long currentStart = System.nanoTime();
+
+        Segment(final long ttlNanos, final int maxKeys) {
+            this.ttlNanos = ttlNanos;
+            this.maxKeys = maxKeys;
+            // load factor is at most 0.5
+            final int capacity = Integer.highestOneBit(maxKeys) << 2;
+            mask = capacity - 1;
+            currentHashes = new long[capacity * 2];
+            currentStatuses = new int[capacity];
+            previousHashes = new long[capacity * 2];
+            previousStatuses = new int[capacity];
+        }
+
+        synchronized int get(final long high, final long low) {
+            rotateIfExpired();
+            final int status = find(currentHashes, currentStatuses, high, low);
+            return status == MISSING ? find(previousHashes, previousStatuses, high, low) : status;
+        }
+
+        synchronized void put(final long high, final long low, final int status) {
+            rotateIfExpired();
+            if (currentSize == maxKeys) {
+                rotate();
+            }
+            int slot = (int) high & mask;
+            while (currentHashes[slot * 2 + 1] != 0) {
+                if (currentHashes[slot * 2] == high && currentHashes[slot * 2 + 1] == low) {
+                    currentStatuses[slot] = status;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            currentHashes[slot * 2] = high;
+            currentHashes[slot * 2 + 1] = low;
+            currentStatuses[slot] = status;
+            currentSize++;
+        }
+
+        private int find(final long[] hashes, final int[] statuses, final long high, final long low) {
+            int slot = (int) high & mask;
+            while (hashes[slot * 2 + 1] != 0) {
+                if (hashes[slot * 2] == high && hashes[slot * 2 + 1] == low) {
+                    return statuses[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return MISSING;
+        }
+
+        private void rotateIfExpired() {
+            final long age = System.nanoTime() - currentStart;
+            if (age >= ttlNanos) {
+                rotate();
+                if (age >= ttlNanos * 2) {
+                    // previous generation is expired as well
+                    rotate();
+                }
+            }
+        }
+
+        /**
+         * Current generation becomes previous one, cleared previous generation becomes current one
+         */
+        private void rotate() {
+            final long[] hashes = previousHashes;
+            final int[] statuses = previousStatuses;
+            previousHashes = currentHashes;
+            previousStatuses = currentStatuses;
+            Arrays.fill(hashes, 0);
+            Arrays.fill(statuses, MISSING);
+            currentHashes = hashes;
+            currentStatuses = statuses;
+            currentSize = 0;
+            currentStart = System.nanoTime();
+        }
+    }
+}
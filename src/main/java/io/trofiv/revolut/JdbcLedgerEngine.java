@@ -0,0 +1,35 @@
+package io.trofiv.revolut;
+
+import com.google.inject.Singleton;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ledger engine which reads and mutates accounts directly in the database for every request
+ */
+@Singleton
+public class JdbcLedgerEngine implements LedgerEngine {
+    @Override
+    public @NotNull Account getAccount(final @NotNull String id) throws GenericException {
+        return Account.getAccountById(id);
+    }
+
+    @Override
+    public void getAccounts(final @NotNull Collection<String> ids, final @NotNull Account.AmountConsumer consumer)
+            throws GenericException {
+        Account.getAccountsByIds(ids, consumer);
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        transfer.makeTransfer();
+    }
+
+    @Override
+    public @NotNull List<TransferResult> transfer(final @NotNull TransferBatch batch) throws GenericException {
+        return batch.execute();
+    }
+}
@@ -0,0 +1,82 @@
+package io.trofiv.revolut;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram recorded in microseconds without allocations or locks on the recording path
+ * and exposed as a cumulative Prometheus histogram in seconds
+ */
+final class LatencyHistogram {
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final long[] BUCKETS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000,
+            100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, 10_000_000};
+    private static final String[] BUCKET_LABELS = new String[BUCKETS_MICROS.length];
+    private static final double MICROS_PER_SECOND = TimeUnit.SECONDS.toMicros(1);
+    private static final int MICROS_SCALE = 6;
+
+    static {
+        for (int i = 0; i < BUCKETS_MICROS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKETS_MICROS[i], MICROS_SCALE)
+                    .stripTrailingZeros()
+                    .toPlainString();
+        }
+    }
+
+    private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+    private final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    private final LongAdder sumMicros = new LongAdder();
+    private Histogram interval;
+
+    void recordNanos(final long nanos) {
+        final long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        recorder.recordValue(micros);
+        sumMicros.add(micros);
+    }
+
+    /**
+     * Appends histogram samples in Prometheus text format
+     *
+     * @param out    output to append to
+     * @param name   metric family name
+     * @param labels comma separated labels of the samples, may be empty
+     */
+    synchronized void write(
+            final @NotNull StringBuilder out,
+            final @NotNull String name,
+            final @NotNull String labels) {
+        collect();
+        final String separator = labels.isEmpty() ? "" : ",";
+        for (int i = 0; i < BUCKETS_MICROS.length; i++) {
+            out.append(name).append("_bucket{").append(labels).append(separator)
+                    .append("le=\"").append(BUCKET_LABELS[i]).append("\"} ")
+                    .append(total.getCountBetweenValues(0, BUCKETS_MICROS[i])).append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append(separator)
+                .append("le=\"+Inf\"} ").append(total.getTotalCount()).append('\n');
+        out.append(name).append("_sum");
+        appendLabels(out, labels);
+        out.append(sumMicros.sum() / MICROS_PER_SECOND).append('\n');
+        out.append(name).append("_count");
+        appendLabels(out, labels);
+        out.append(total.getTotalCount()).append('\n');
+    }
+
+    private void collect() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+    }
+
+    private static void appendLabels(final @NotNull StringBuilder out, final @NotNull String labels) {
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+    }
+}
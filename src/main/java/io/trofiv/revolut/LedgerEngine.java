@@ -0,0 +1,112 @@
+package io.trofiv.revolut;
+
+import com.google.inject.ImplementedBy;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Executes account reads and transfers. Implementation is selected by {@code ledger.engine} property,
+ * default implementation applies every transfer as a separate database transaction
+ */
+@SuppressWarnings("ClassReferencesSubclass")
+@ImplementedBy(JdbcLedgerEngine.class)
+public interface LedgerEngine {
+    /**
+     * Prepares engine for serving requests, called once before application server is started
+     *
+     * @throws GenericException if engine state can't be initialized
+     */
+    default void start() throws GenericException {
+    }
+
+    /**
+     * Releases engine resources, called once after application server is stopped
+     */
+    default void stop() {
+    }
+
+    /**
+     * @return whether transfers with idempotency keys are supported, engines which don't support them
+     * don't deduplicate retried transfers
+     */
+    default boolean supportsIdempotencyKeys() {
+        return true;
+    }
+
+    /**
+     * @return whether applied transfers are appended to {@link TransferHistory}
+     */
+    default boolean recordsHistory() {
+        return true;
+    }
+
+    /**
+     * Returns account by id
+     *
+     * @param id specified account id to return
+     * @return account for the specified id
+     * @throws NoSuchAccountException if account for the specified account id doesn't exist
+     * @throws GenericException       if any other error has occurred
+     */
+    @NotNull Account getAccount(@NotNull String id) throws GenericException;
+
+    /**
+     * Passes existing accounts with the specified ids to the consumer in no particular order,
+     * inexistent accounts are skipped
+     *
+     * @param ids      distinct account ids to read
+     * @param consumer receives account amounts
+     * @throws GenericException if consumer or any other error has occurred, accounts passed before the failure
+     *                          are not reverted
+     */
+    void getAccounts(@NotNull Collection<String> ids, @NotNull Account.AmountConsumer consumer)
+            throws GenericException;
+
+    /**
+     * Performs the specified transfer and returns once it is durably applied
+     *
+     * @param transfer transfer to perform
+     * @throws InvalidRequestException if specified amount is not positive or source and target accounts are the same
+     * @throws NotEnoughMoneyException if credited account has insufficient funds
+     * @throws NoSuchAccountException  if either credited or debited account dosen't exist
+     * @throws GenericException        if any other error has occurred
+     */
+    void transfer(@NotNull Transfer transfer) throws GenericException;
+
+    /**
+     * Performs the specified transfer without blocking the caller if engine supports it.
+     * Default implementation performs transfer in the calling thread
+     *
+     * @param transfer transfer to perform
+     * @return future completed once transfer is durably applied, or completed exceptionally with
+     * the same exceptions as {@link #transfer(Transfer)} throws
+     */
+    default @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            transfer(transfer);
+            result.complete(null);
+        } catch (GenericException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Performs all transfers of the specified batch atomically with respect to other transfers
+     * and returns once they are durably applied
+     *
+     * @param batch transfers to perform
+     * @return result of every transfer in the batch order
+     * @throws GenericException if any error not related to a particular transfer has occurred,
+     *                          no transfers are applied in this case
+     */
+    @NotNull List<TransferResult> transfer(@NotNull TransferBatch batch) throws GenericException;
+}
@@ -25,6 +25,37 @@ public class MainModule extends AbstractModule {
             LOGGER.error("Can't initialize application properties", ex);
         }
         Names.bindProperties(binder(), properties);
+        bind(LedgerEngine.class).to(getLedgerEngineClass(properties.getProperty("ledger.engine", "jdbc")));
         requestStaticInjection(DatabaseCommons.class);
+        requestStaticInjection(AccountCache.class);
+        requestStaticInjection(HotAccounts.class);
+    }
+
+    /**
+     * Resolves ledger engine implementation by its configured name
+     *
+     * @param name engine name, one of {@code jdbc}, {@code atomic}, {@code group-commit},
+     *             {@code optimistic}, {@code sharded}, {@code sequenced} or {@code wal}
+     * @return ledger engine implementation class
+     */
+    static Class<? extends LedgerEngine> getLedgerEngineClass(final String name) {
+        switch (name) {
+            case "jdbc":
+                return JdbcLedgerEngine.class;
+            case "atomic":
+                return AtomicLedgerEngine.class;
+            case "group-commit":
+                return GroupCommitLedgerEngine.class;
+            case "optimistic":
+                return OptimisticLedgerEngine.class;
+            case "sharded":
+                return ShardedLedgerEngine.class;
+            case "sequenced":
+                return SequencedLedgerEngine.class;
+            case "wal":
+                return WalLedgerEngine.class;
+            default:
+                throw new IllegalArgumentException("Unknown ledger engine: " + name);
+        }
     }
 }
@@ -0,0 +1,308 @@
+package io.trofiv.revolut;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of applied transfers kept in memory-mapped segment files of a fixed size. Every record holds
+ * sequence number, amount and ids of the transfer accounts, so records have to be replayed exactly once on top of
+ * the state they were written after. Record is published by writing its length last, so a record interrupted by
+ * a process crash is never replayed. Records are in the page cache as soon as they are appended and survive
+ * a process crash, {@link #force()} makes them survive an OS crash as well.
+ * Not thread safe, should be appended by a single writer
+ */
+final class MappedTransferLog implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // length and checksum
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    // sequence number, amount and lengths of the account ids
+    private static final int FIXED_PAYLOAD_SIZE = Long.BYTES * 2 + Short.BYTES * 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    private long segment;
+    private long sequence;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Maps a new segment after the latest existing one in the specified directory
+     *
+     * @param directory    directory to keep segments in
+     * @param segmentSize  size of a segment file in bytes
+     * @param lastSequence last sequence number written to the existing segments
+     * @throws IOException if segment can't be created
+     */
+    MappedTransferLog(final @NotNull Path directory, final int segmentSize, final long lastSequence)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sequence = lastSequence;
+        Files.createDirectories(directory);
+        final List<Path> segments = listSegments(directory);
+        segment = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+        mapSegment();
+    }
+
+    /**
+     * Appends a record of the applied transfer
+     *
+     * @return sequence number assigned to the record
+     * @throws IOException if record doesn't fit into an empty segment or a new segment can't be created
+     */
+    long append(final @NotNull Transfer transfer) throws IOException {
+        final byte[] sourceAccountId = transfer.getSourceAccountId().getBytes(StandardCharsets.UTF_8);
+        final byte[] targetAccountId = transfer.getTargetAccountId().getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(getRecordSize(sourceAccountId, targetAccountId));
+        final int start = buffer.position();
+        writeRecord(sourceAccountId, targetAccountId, transfer.getAmount());
+        buffer.putInt(start, buffer.position() - start - HEADER_SIZE);
+        return sequence;
+    }
+
+    /**
+     * Appends records of the transfers applied together, so they are either replayed all or not replayed at all:
+     * all records are written to the same segment and the first one is published last
+     *
+     * @param transfers applied transfers in the order they are applied
+     * @return sequence number assigned to the last record
+     * @throws IOException if records don't fit into an empty segment or a new segment can't be created
+     */
+    long append(final @NotNull List<Transfer> transfers) throws IOException {
+        final List<byte[]> accountIds = new ArrayList<>(transfers.size() * 2);
+        int size = 0;
+        for (final Transfer transfer : transfers) {
+            final byte[] sourceAccountId = transfer.getSourceAccountId().getBytes(StandardCharsets.UTF_8);
+            final byte[] targetAccountId = transfer.getTargetAccountId().getBytes(StandardCharsets.UTF_8);
+            accountIds.add(sourceAccountId);
+            accountIds.add(targetAccountId);
+            size += getRecordSize(sourceAccountId, targetAccountId);
+        }
+        ensureCapacity(size);
+        final int[] starts = new int[transfers.size()];
+        for (int i = 0; i < transfers.size(); i++) {
+            starts[i] = buffer.position();
+            writeRecord(accountIds.get(i * 2), accountIds.get(i * 2 + 1), transfers.get(i).getAmount());
+        }
+        final int end = buffer.position();
+        for (int i = transfers.size() - 1; i >= 0; i--) {
+            final int next = i + 1 < starts.length ? starts[i + 1] : end;
+            buffer.putInt(starts[i], next - starts[i] - HEADER_SIZE);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return sequence number of the last appended record
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Forces appended records of the current segment to the storage device
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Forces current segment and maps a new one
+     *
+     * @return number of the closed segment
+     * @throws IOException if a new segment can't be created
+     */
+    long rotate() throws IOException {
+        force();
+        final long closed = segment;
+        segment++;
+        mapSegment();
+        return closed;
+    }
+
+    /**
+     * Removes closed segments which are already reflected in a checkpoint, doesn't touch the current segment,
+     * so it can be called concurrently with appends
+     *
+     * @param lastSegment number of the latest segment to remove
+     */
+    void deleteSegmentsUpTo(final long lastSegment) {
+        try {
+            for (final Path path : listSegments(directory)) {
+                if (segmentNumber(path) <= lastSegment) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Log segments cleanup failed up to {}", lastSegment, e);
+        }
+    }
+
+    /**
+     * Forces current segment, mapping itself is released once the buffer is collected
+     */
+    @Override
+    public void close() {
+        force();
+    }
+
+    /**
+     * Replays records of all segments of the specified directory in order. Replay of a segment stops
+     * at the first unpublished or corrupted record
+     *
+     * @param directory     directory with segments
+     * @param afterSequence sequence number of the last record reflected in the replayed state,
+     *                      records up to it are skipped
+     * @param replayer      receives the replayed records
+     * @return sequence number of the last record, {@code afterSequence} if there are no records after it
+     * @throws IOException if segments can't be read
+     */
+    static long replay(
+            final @NotNull Path directory,
+            final long afterSequence,
+            final @NotNull Replayer replayer)
+            throws IOException {
+        long lastSequence = afterSequence;
+        if (!Files.isDirectory(directory)) {
+            return lastSequence;
+        }
+        final CRC32 crc = new CRC32();
+        for (final Path path : listSegments(directory)) {
+            final ByteBuffer segment;
+            try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int records = 0;
+            while (segment.remaining() >= HEADER_SIZE) {
+                final int length = segment.getInt();
+                final int checksum = segment.getInt();
+                if (length == 0) {
+                    break;
+                }
+                if (length < FIXED_PAYLOAD_SIZE || length > segment.remaining()
+                        || (int) getChecksum(crc, segment, segment.position(), length) != checksum) {
+                    LOGGER.warn("Log segment {} has corrupted record after {} records", path, records);
+                    break;
+                }
+                final long sequence = segment.getLong();
+                final long amount = segment.getLong();
+                final String sourceAccountId = readAccountId(segment);
+                final String targetAccountId = readAccountId(segment);
+                if (sequence > lastSequence) {
+                    replayer.replay(sequence, sourceAccountId, targetAccountId, amount);
+                    lastSequence = sequence;
+                }
+                records++;
+            }
+            LOGGER.info("Replayed {} records from log segment {}", records, path);
+        }
+        return lastSequence;
+    }
+
+    private void ensureCapacity(final int size) throws IOException {
+        if (size > segmentSize) {
+            throw new IOException("Log record of " + size + " bytes doesn't fit into a segment of "
+                    + segmentSize + " bytes");
+        }
+        if (size > buffer.remaining()) {
+            rotate();
+        }
+    }
+
+    /**
+     * Writes record with zero length, so it's not published yet
+     */
+    private void writeRecord(
+            final byte[] sourceAccountId,
+            final byte[] targetAccountId,
+            final long amount) {
+        final int start = buffer.position();
+        buffer.putInt(0);
+        buffer.putInt(0);
+        buffer.putLong(sequence + 1);
+        buffer.putLong(amount);
+        buffer.putShort((short) sourceAccountId.length);
+        buffer.put(sourceAccountId);
+        buffer.putShort((short) targetAccountId.length);
+        buffer.put(targetAccountId);
+        final int payloadStart = start + HEADER_SIZE;
+        buffer.putInt(start + Integer.BYTES,
+                (int) getChecksum(crc, buffer, payloadStart, buffer.position() - payloadStart));
+        sequence++;
+    }
+
+    private static int getRecordSize(final byte[] sourceAccountId, final byte[] targetAccountId) {
+        return HEADER_SIZE + FIXED_PAYLOAD_SIZE + sourceAccountId.length + targetAccountId.length;
+    }
+
+    private static long getChecksum(
+            final @NotNull CRC32 crc,
+            final @NotNull ByteBuffer buffer,
+            final int offset,
+            final int length) {
+        final ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length).position(offset);
+        crc.reset();
+        crc.update(payload);
+        return crc.getValue();
+    }
+
+    private static @NotNull String readAccountId(final @NotNull ByteBuffer segment) {
+        final byte[] id = new byte[segment.getShort()];
+        segment.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private void mapSegment() throws IOException {
+        final Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+        try (final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // file is extended with zeros, so unwritten space reads as unpublished records
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private static @NotNull List<Path> listSegments(final @NotNull Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (final DirectoryStream<Path> stream =
+                     Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentNumber(final @NotNull Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Receives records replayed from the log
+     */
+    @FunctionalInterface
+    interface Replayer {
+        void replay(long sequence, @NotNull String sourceAccountId, @NotNull String targetAccountId, long amount);
+    }
+}
@@ -0,0 +1,185 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Application metrics exposed in Prometheus text format. Values are recorded with {@link LongAdder}
+ * and {@link LatencyHistogram}, so recording doesn't allocate or block
+ */
+@SuppressWarnings("UtilityClassCanBeEnum")
+public final class Metrics {
+    static final LatencyHistogram CONNECTION_DURATION = new LatencyHistogram();
+    static final LongAdder ROLLBACKS = new LongAdder();
+    static final LongAdder STATEMENTS_PREPARED = new LongAdder();
+    static final LongAdder POLICY_CHANGES = new LongAdder();
+    static final LatencyHistogram TRANSFER_LOCK_WAIT = new LatencyHistogram();
+    static final LatencyHistogram POOL_ACQUIRE = new LatencyHistogram();
+    static final LongAdder POOL_TIMEOUTS = new LongAdder();
+    static final LongAdder OPTIMISTIC_CONFLICTS = new LongAdder();
+    static final LongAdder OPTIMISTIC_FALLBACKS = new LongAdder();
+
+    private static final String UNMATCHED_ROUTE = "unmatched";
+    private static final String OTHER_METHOD = "other";
+    private static final Set<String> METHODS = ImmutableSet.of(
+            "GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS", "TRACE", "CONNECT");
+    private static final ConcurrentMap<String, ConcurrentMap<String, RouteMetrics>> ROUTES = new ConcurrentHashMap<>();
+    private static final Map<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Records a served HTTP request. Requests not matched to any route are recorded under a single route
+     * and requests of non-standard methods under a single method, so clients can't create unbounded series
+     *
+     * @param requestMethod request method
+     * @param route         matched route path
+     * @param status        response status code
+     * @param durationNs    request processing duration in nanoseconds
+     */
+    static void recordRequest(
+            final @NotNull String requestMethod,
+            final @NotNull String route,
+            final int status,
+            final long durationNs) {
+        final String method = METHODS.contains(requestMethod) ? requestMethod : OTHER_METHOD;
+        ConcurrentMap<String, RouteMetrics> routes = ROUTES.get(method);
+        if (routes == null) {
+            routes = ROUTES.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+        }
+        final String path = route.isEmpty() ? UNMATCHED_ROUTE : route;
+        RouteMetrics metrics = routes.get(path);
+        if (metrics == null) {
+            // computeIfAbsent locks the map bin even if the key is present, so it's used only for new routes
+            metrics = routes.computeIfAbsent(path, key -> new RouteMetrics(method, key));
+        }
+        metrics.duration.recordNanos(durationNs);
+        metrics.getResponses(status).increment();
+    }
+
+    /**
+     * Registers a gauge read on every scrape, replaces a gauge registered with the same name
+     *
+     * @param name  metric name
+     * @param help  metric description
+     * @param value gauge value supplier
+     */
+    static void registerGauge(
+            final @NotNull String name,
+            final @NotNull String help,
+            final @NotNull LongSupplier value) {
+        GAUGES.put(name, new Gauge(help, value));
+    }
+
+    /**
+     * @return all metrics in Prometheus text exposition format
+     */
+    public static @NotNull String scrape() {
+        final StringBuilder out = new StringBuilder(4096);
+        header(out, "http_request_duration_seconds", "histogram", "HTTP requests processing duration by route");
+        ROUTES.values().forEach(routes -> routes.values().forEach(
+                route -> route.duration.write(out, "http_request_duration_seconds", route.labels)));
+        header(out, "http_responses_total", "counter", "HTTP responses by route and status code");
+        ROUTES.values().forEach(routes -> routes.values().forEach(route -> {
+            for (int status = 0; status < route.responses.length(); status++) {
+                final LongAdder count = route.responses.get(status);
+                if (count != null) {
+                    sample(out, "http_responses_total", route.labels + ",status=\"" + status + '"', count.sum());
+                }
+            }
+        }));
+        header(out, "db_connection_duration_seconds", "histogram",
+                "Duration of database work performed with a pooled connection, including commit");
+        CONNECTION_DURATION.write(out, "db_connection_duration_seconds", "");
+        header(out, "db_rollbacks_total", "counter", "Rolled back database transactions");
+        sample(out, "db_rollbacks_total", "", ROLLBACKS.sum());
+        header(out, "db_statements_prepared_total", "counter", "Statements prepared for pooled connections");
+        sample(out, "db_statements_prepared_total", "", STATEMENTS_PREPARED.sum());
+        header(out, "db_connection_policy_changes_total", "counter",
+                "Transaction policy settings applied to pooled connections");
+        sample(out, "db_connection_policy_changes_total", "", POLICY_CHANGES.sum());
+        header(out, "transfer_lock_wait_seconds", "histogram", "Time spent locking transfer accounts");
+        TRANSFER_LOCK_WAIT.write(out, "transfer_lock_wait_seconds", "");
+        header(out, "db_pool_acquire_seconds", "histogram", "Time spent waiting for a pooled connection");
+        POOL_ACQUIRE.write(out, "db_pool_acquire_seconds", "");
+        header(out, "db_pool_timeouts_total", "counter", "Pooled connection requests timed out");
+        sample(out, "db_pool_timeouts_total", "", POOL_TIMEOUTS.sum());
+        header(out, "transfer_optimistic_conflicts_total", "counter",
+                "Optimistic transfer attempts failed due to a concurrent change");
+        sample(out, "transfer_optimistic_conflicts_total", "", OPTIMISTIC_CONFLICTS.sum());
+        header(out, "transfer_optimistic_fallbacks_total", "counter",
+                "Transfers applied with account locks by optimistic engine");
+        sample(out, "transfer_optimistic_fallbacks_total", "", OPTIMISTIC_FALLBACKS.sum());
+        GAUGES.forEach((name, gauge) -> {
+            header(out, name, "gauge", gauge.help);
+            sample(out, name, "", gauge.value.getAsLong());
+        });
+        return out.toString();
+    }
+
+    private static void header(
+            final @NotNull StringBuilder out,
+            final @NotNull String name,
+            final @NotNull String type,
+            final @NotNull String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(
+            final @NotNull StringBuilder out,
+            final @NotNull String name,
+            final @NotNull String labels,
+            final long value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Metrics of a single route, status codes counters are created on first use
+     */
+    private static final class RouteMetrics {
+        private static final int MAX_STATUS = 600;
+
+        private final String labels;
+        private final LatencyHistogram duration = new LatencyHistogram();
+        private final AtomicReferenceArray<LongAdder> responses = new AtomicReferenceArray<>(MAX_STATUS);
+
+        RouteMetrics(final @NotNull String method, final @NotNull String route) {
+            labels = "method=\"" + method + "\",route=\"" + route + '"';
+        }
+
+        @NotNull LongAdder getResponses(final int status) {
+            final int index = status >= 0 && status < MAX_STATUS ? status : 0;
+            LongAdder count = responses.get(index);
+            if (count == null) {
+                responses.compareAndSet(index, null, new LongAdder());
+                count = responses.get(index);
+            }
+            return count;
+        }
+    }
+
+    private static final class Gauge {
+        private final String help;
+        private final LongSupplier value;
+
+        Gauge(final @NotNull String help, final @NotNull LongSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+
+/**
+ * Money amounts are represented as {@code long} number of minor currency units with the fixed {@link #SCALE},
+ * so {@code 100.5} is stored as {@code 10050}. Amounts are parsed and formatted without {@link BigDecimal}
+ */
+@SuppressWarnings("UtilityClassCanBeEnum")
+public final class Money {
+    /**
+     * Number of minor units digits of the currency
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Max length of a plain decimal amount, e.g. {@code -92233720368547758.08}
+     */
+    public static final int PLAIN_MAX_LENGTH = 21;
+
+    private static final char DECIMAL_POINT = '.';
+
+    private Money() {
+    }
+
+    /**
+     * Parses decimal amount representation to minor units
+     *
+     * @param value plain decimal amount, e.g. {@code -100.5}
+     * @return amount in minor units
+     * @throws NumberFormatException if value is not a plain decimal, has more significant fraction digits
+     *                               than {@link #SCALE} or doesn't fit into {@code long} minor units
+     */
+    public static long parse(final @NotNull CharSequence value) {
+        final int length = value.length();
+        int position = 0;
+        final boolean negative = length > 0 && value.charAt(0) == '-';
+        if (negative || length > 0 && value.charAt(0) == '+') {
+            position++;
+        }
+        long result = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        try {
+            for (; position < length; position++) {
+                final char c = value.charAt(position);
+                if (c == DECIMAL_POINT && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (c >= '0' && c <= '9') {
+                    digits++;
+                    if (fractionDigits >= SCALE) {
+                        if (c != '0') {
+                            throw invalid(value);
+                        }
+                        continue;
+                    }
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                    result = Math.addExact(Math.multiplyExact(result, 10), negative ? '0' - c : c - '0');
+                } else {
+                    throw invalid(value);
+                }
+            }
+            if (digits == 0) {
+                throw invalid(value);
+            }
+            for (int i = Math.max(fractionDigits, 0); i < SCALE; i++) {
+                result = Math.multiplyExact(result, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw invalid(value);
+        }
+        return result;
+    }
+
+    /**
+     * Formats minor units as plain decimal amount with exactly {@link #SCALE} fraction digits
+     *
+     * @param minorUnits amount in minor units
+     * @return plain decimal amount, e.g. {@code -100.50}
+     */
+    public static @NotNull String toPlainString(final long minorUnits) {
+        final char[] buffer = new char[PLAIN_MAX_LENGTH];
+        return new String(buffer, 0, toPlainChars(minorUnits, buffer));
+    }
+
+    /**
+     * Formats minor units as plain decimal amount with exactly {@link #SCALE} fraction digits
+     * to the start of the specified buffer
+     *
+     * @param minorUnits amount in minor units
+     * @param buffer     buffer of at least {@link #PLAIN_MAX_LENGTH} chars
+     * @return number of written chars
+     */
+    public static int toPlainChars(final long minorUnits, final @NotNull char[] buffer) {
+        // digits are written from the end of the buffer and moved to its start, negative amounts are formatted
+        // with negative remainders, since the minimal long has no positive counterpart
+        int position = PLAIN_MAX_LENGTH;
+        long rest = minorUnits;
+        for (int i = 0; i < SCALE; i++) {
+            buffer[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        }
+        buffer[--position] = DECIMAL_POINT;
+        do {
+            buffer[--position] = (char) ('0' + Math.abs(rest % 10));
+            rest /= 10;
+        } while (rest != 0);
+        if (minorUnits < 0) {
+            buffer[--position] = '-';
+        }
+        final int length = PLAIN_MAX_LENGTH - position;
+        System.arraycopy(buffer, position, buffer, 0, length);
+        return length;
+    }
+
+    /**
+     * Converts minor units to decimal amount for interoperability with {@link BigDecimal} based code
+     *
+     * @param minorUnits amount in minor units
+     * @return decimal amount with {@link #SCALE}
+     */
+    public static @NotNull BigDecimal toBigDecimal(final long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    private static NumberFormatException invalid(final @NotNull CharSequence value) {
+        return new NumberFormatException("Invalid amount with scale " + SCALE + ": " + value);
+    }
+
+    /**
+     * Writes minor units as a JSON number with {@link #SCALE} fraction digits without creating a string
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public static final class Serializer extends JsonSerializer<Long> {
+        @Override
+        public void serialize(final Long value, final JsonGenerator gen, final SerializerProvider serializers)
+                throws IOException {
+            final char[] buffer = new char[PLAIN_MAX_LENGTH];
+            gen.writeRawValue(buffer, 0, toPlainChars(value, buffer));
+        }
+    }
+
+    /**
+     * Reads minor units from either JSON number or JSON string holding plain decimal amount. Amount is parsed
+     * from the parser buffer, so neither a string nor a {@link BigDecimal} is created
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public static final class Deserializer extends JsonDeserializer<Long> {
+        @Override
+        public Long deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            final JsonToken token = p.getCurrentToken();
+            if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_INT
+                    && token != JsonToken.VALUE_NUMBER_FLOAT) {
+                return (Long) ctxt.handleUnexpectedToken(Long.class, p);
+            }
+            try {
+                return parse(CharBuffer.wrap(p.getTextCharacters(), p.getTextOffset(), p.getTextLength()));
+            } catch (NumberFormatException e) {
+                return (Long) ctxt.handleWeirdStringValue(Long.class, p.getText(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.trofiv.revolut;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ledger engine which applies transfers without locking accounts on read, account updates are conditional
+ * on the row version read. A conflicting transfer is retried up to {@code ledger.optimisticMaxAttempts} times
+ * with randomized exponential backoff starting at {@code ledger.optimisticBackoffMicros}. If all attempts
+ * conflicted, transfer is applied with account locks. Conflicts are recorded as contention by {@link HotAccounts},
+ * and transfers of {@link HotAccounts#isHot hot accounts} take the locks right away
+ */
+@Singleton
+public class OptimisticLedgerEngine extends JdbcLedgerEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final int maxAttempts;
+    private final long backoffNanos;
+
+    @Inject
+    public OptimisticLedgerEngine(
+            @Named("ledger.optimisticMaxAttempts") final int maxAttempts,
+            @Named("ledger.optimisticBackoffMicros") final long backoffMicros) {
+        this.maxAttempts = maxAttempts;
+        backoffNanos = TimeUnit.MICROSECONDS.toNanos(backoffMicros);
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        transfer.validate();
+        if (isHot(transfer)) {
+            transfer.makeTransfer();
+            return;
+        }
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            final long attemptStart = System.nanoTime();
+            if (transfer.tryOptimisticTransfer()) {
+                return;
+            }
+            Metrics.OPTIMISTIC_CONFLICTS.increment();
+            HotAccounts.recordContention(transfer.getSourceAccountId(), transfer.getTargetAccountId(),
+                    System.nanoTime() - attemptStart, true);
+            if (attempt < maxAttempts) {
+                backOff(attempt);
+            }
+        }
+        LOGGER.debug("Transfer {} conflicted {} times, applying it with account locks", transfer, maxAttempts);
+        Metrics.OPTIMISTIC_FALLBACKS.increment();
+        transfer.makeTransfer();
+    }
+
+    /**
+     * @param transfer transfer to check
+     * @return whether any of the transfer accounts is hot
+     */
+    private static boolean isHot(final @NotNull Transfer transfer) {
+        return HotAccounts.isHot(transfer.getSourceAccountId()) || HotAccounts.isHot(transfer.getTargetAccountId());
+    }
+
+    private void backOff(final int attempt) {
+        final long maxBackoffNanos = backoffNanos << (attempt - 1);
+        if (maxBackoffNanos > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(maxBackoffNanos) + 1);
+        }
+    }
+}
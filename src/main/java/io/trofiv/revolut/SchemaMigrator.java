@@ -0,0 +1,109 @@
+package io.trofiv.revolut;
+
+import com.pivovarit.function.ThrowingConsumer;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brings database schema to the current version once on startup. Applied migrations are recorded
+ * in {@code SCHEMA_VERSION} table, so every migration is applied only once per database
+ */
+@SuppressWarnings({"UtilityClassCanBeEnum", "SqlNoDataSourceInspection", "SqlResolve"})
+final class SchemaMigrator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            new Migration(1, "Create accounts table", conn -> execute(conn,
+                    "CREATE TABLE IF NOT EXISTS ACCOUNTS(ID VARCHAR(255) NOT NULL PRIMARY KEY, AMOUNT BIGINT)")),
+            new Migration(2, "Store amounts as minor units", AmountColumnMigration::migrate),
+            new Migration(3, "Seed demo accounts", conn -> execute(conn,
+                    "INSERT INTO ACCOUNTS SELECT * FROM (SELECT '1', 10000 UNION SELECT '2', 20000) X "
+                            + "WHERE NOT EXISTS(SELECT * FROM ACCOUNTS)")),
+            new Migration(4, "Add account row version", conn -> execute(conn,
+                    "ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 0 NOT NULL")),
+            new Migration(5, "Create idempotency keys table", conn -> execute(conn,
+                    "CREATE TABLE IF NOT EXISTS IDEMPOTENCY_KEYS(IDEMPOTENCY_KEY VARCHAR(255) NOT NULL PRIMARY KEY, "
+                            + "STATUS INT NOT NULL, CREATED_AT TIMESTAMP NOT NULL)")),
+            new Migration(6, "Create transfers history table", conn -> execute(conn,
+                    "CREATE TABLE IF NOT EXISTS TRANSFERS(SEQ BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                            + "SOURCE_ACCOUNT_ID VARCHAR(255) NOT NULL, TARGET_ACCOUNT_ID VARCHAR(255) NOT NULL, "
+                            + "AMOUNT BIGINT NOT NULL, IDEMPOTENCY_KEY VARCHAR(255), APPLIED_AT TIMESTAMP NOT NULL)")));
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Applies all migrations which are not applied yet in the version order
+     *
+     * @param conn SQL connection to use, should be in auto commit mode since H2 commits DDL statements anyway
+     * @return current schema version
+     * @throws GenericException if any migration failed, migrations applied before it stay applied
+     */
+    static int migrate(final @NotNull Connection conn) throws GenericException {
+        try {
+            execute(conn, "CREATE TABLE IF NOT EXISTS SCHEMA_VERSION(VERSION INT NOT NULL PRIMARY KEY, "
+                    + "DESCRIPTION VARCHAR(255) NOT NULL, APPLIED_AT TIMESTAMP NOT NULL)");
+            int version = getVersion(conn);
+            for (final Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                LOGGER.info("Applying schema migration {}: {}", migration.version, migration.description);
+                migration.action.accept(conn);
+                try (final PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO SCHEMA_VERSION VALUES (?, ?, CURRENT_TIMESTAMP())")) {
+                    ps.setInt(1, migration.version);
+                    ps.setString(2, migration.description);
+                    ps.executeUpdate();
+                }
+                version = migration.version;
+            }
+            LOGGER.info("Database schema version is {}", version);
+            return version;
+        } catch (GenericException e) {
+            throw e;
+        } catch (Exception e) {
+            LOGGER.error("Schema migration failed", e);
+            throw new GenericException("Schema migration failed", e);
+        }
+    }
+
+    private static int getVersion(final @NotNull Connection conn) throws SQLException {
+        try (final Statement statement = conn.createStatement();
+             final ResultSet rs = statement.executeQuery("SELECT MAX(VERSION) FROM SCHEMA_VERSION")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void execute(final @NotNull Connection conn, final @NotNull String sql) throws SQLException {
+        try (final Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final ThrowingConsumer<Connection, Exception> action;
+
+        Migration(
+                final int version,
+                final @NotNull String description,
+                final @NotNull ThrowingConsumer<Connection, Exception> action) {
+            this.version = version;
+            this.description = description;
+            this.action = action;
+        }
+    }
+}
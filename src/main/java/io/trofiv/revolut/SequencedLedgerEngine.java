@@ -0,0 +1,505 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Ledger engine which keeps account amounts in memory and applies all transfers on a single sequencer thread
+ * fed by a lock-free ring buffer. Applied transfers are made durable by {@link TransferJournal} before callers
+ * are released, database stays the system of record and is updated by periodic asynchronous snapshots
+ */
+@Singleton
+public class SequencedLedgerEngine implements LedgerEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final boolean READ_WRITE = false;
+
+    private final int ringBufferSize;
+    private final Path journalDirectory;
+    private final boolean journalFsync;
+    private final long snapshotIntervalMs;
+    private final Map<String, Long> amounts = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingSnapshot = new HashMap<>();
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ledger-snapshot").setDaemon(true).build());
+
+    private Disruptor<LedgerEvent> disruptor;
+    private TransferJournal journal;
+    private volatile GenericException failure;
+
+    @Inject
+    public SequencedLedgerEngine(
+            @Named("ledger.ringBufferSize") final int ringBufferSize,
+            @Named("ledger.journalDirectory") final String journalDirectory,
+            @Named("ledger.journalFsync") final boolean journalFsync,
+            @Named("ledger.snapshotIntervalMs") final long snapshotIntervalMs) {
+        this.ringBufferSize = ringBufferSize;
+        this.journalDirectory = Paths.get(journalDirectory);
+        this.journalFsync = journalFsync;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    /**
+     * Loads accounts from the database, replays journal on top of them and starts sequencer
+     */
+    @Override
+    public void start() throws GenericException {
+        final Map<String, Long> stored = executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_WRITE);
+            return Account.getAllAccounts(conn);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        amounts.putAll(stored);
+        final Map<String, Long> replayed = new HashMap<>();
+        try {
+            final long lastSequence = TransferJournal.replay(journalDirectory, replayed);
+            journal = new TransferJournal(journalDirectory, journalFsync, lastSequence);
+        } catch (IOException e) {
+            LOGGER.error("Journal recovery failed at {}", journalDirectory, e);
+            throw new GenericException("Journal recovery failed at " + journalDirectory, e);
+        }
+        amounts.putAll(replayed);
+        LOGGER.info("Loaded {} accounts, {} of them recovered from journal", amounts.size(), replayed.size());
+
+        disruptor = new Disruptor<>(LedgerEvent::new, ringBufferSize,
+                new ThreadFactoryBuilder().setNameFormat("ledger-sequencer").setDaemon(true).build(),
+                ProducerType.MULTI, new BlockingWaitStrategy());
+        final Sequencer sequencer = new Sequencer(replayed);
+        disruptor.handleEventsWith(sequencer);
+        disruptor.start();
+        snapshotExecutor.scheduleWithFixedDelay(this::requestSnapshot,
+                snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drains sequencer and writes the final snapshot
+     */
+    @Override
+    public void stop() {
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final CompletableFuture<Object> snapshot = new CompletableFuture<>();
+        disruptor.publishEvent((event, sequence, result) -> event.snapshot(result), snapshot);
+        disruptor.shutdown();
+        try {
+            snapshot.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("Final snapshot failed, journal is kept for recovery", e.getCause());
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.error("Journal close failed", e);
+        }
+    }
+
+    /**
+     * Journal records hold amounts only, so keys of applied transfers would be lost on restart
+     * and their retries would be applied again
+     */
+    @Override
+    public boolean supportsIdempotencyKeys() {
+        return false;
+    }
+
+    /**
+     * Transfers are applied in memory and only amounts are written to the database
+     */
+    @Override
+    public boolean recordsHistory() {
+        return false;
+    }
+
+    @Override
+    public @NotNull Account getAccount(final @NotNull String id) throws GenericException {
+        final Long amount = amounts.get(id);
+        if (amount == null) {
+            LOGGER.info("Account {} does not exist", id);
+            throw new NoSuchAccountException("Account " + id + " does not exist");
+        }
+        return new Account(id, amount);
+    }
+
+    @Override
+    public void getAccounts(final @NotNull Collection<String> ids, final @NotNull Account.AmountConsumer consumer)
+            throws GenericException {
+        try {
+            for (final String id : ids) {
+                final Long amount = amounts.get(id);
+                if (amount != null) {
+                    consumer.accept(id, amount);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Accounts write failed for {} accounts", ids.size(), e);
+            throw new GenericException("Accounts write failed for " + ids.size() + " accounts", e);
+        }
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        validate(transfer);
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        publish(result, (event, sequence, t, r) -> event.transfer(t, r), transfer);
+        await(result, transfer);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer) {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        try {
+            validate(transfer);
+            publish(result, (event, sequence, t, r) -> event.transfer(t, r), transfer);
+        } catch (GenericException e) {
+            result.completeExceptionally(e);
+        }
+        //noinspection ReturnOfNull
+        return result.thenApply(ignored -> null);
+    }
+
+    /**
+     * Applies the whole batch as a single sequencer event, so no other transfers are interleaved with it
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public @NotNull List<TransferResult> transfer(final @NotNull TransferBatch batch) throws GenericException {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        publish(result, (event, sequence, b, r) -> event.batch(b, r), batch);
+        return (List<TransferResult>) await(result, batch);
+    }
+
+    /**
+     * @throws InvalidRequestException if transfer is invalid or has an idempotency key, which isn't supported
+     */
+    private static void validate(final @NotNull Transfer transfer) throws GenericException {
+        transfer.validate();
+        if (transfer.getIdempotencyKey() != null) {
+            throw new InvalidRequestException("Idempotency keys are not supported by the ledger engine!");
+        }
+    }
+
+    private <T> void publish(
+            final @NotNull CompletableFuture<Object> result,
+            final @NotNull EventTranslatorTwoArg<LedgerEvent, T, CompletableFuture<Object>> translator,
+            final @NotNull T request)
+            throws GenericException {
+        final GenericException engineFailure = failure;
+        if (engineFailure != null) {
+            throw new GenericException("Ledger is unavailable", engineFailure);
+        }
+        disruptor.publishEvent(translator, request, result);
+    }
+
+    private static Object await(final @NotNull CompletableFuture<Object> result, final @NotNull Object request)
+            throws GenericException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericException("Interrupted while waiting for " + request, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GenericException) {
+                throw (GenericException) e.getCause();
+            }
+            throw new GenericException("Failed to apply " + request, e.getCause());
+        }
+    }
+
+    private void requestSnapshot() {
+        disruptor.publishEvent((event, sequence, result) -> event.snapshot(result), new CompletableFuture<>());
+    }
+
+    /**
+     * Writes amounts changed in the closed journal segments to the database and removes these segments.
+     * Amounts which failed to be written are retried with the next snapshot
+     */
+    private void writeSnapshot(final @NotNull Map<String, Long> changed, final long closedSegment)
+            throws GenericException {
+        synchronized (pendingSnapshot) {
+            pendingSnapshot.putAll(changed);
+            if (!pendingSnapshot.isEmpty()) {
+                AccountCache.writeThrough(pendingSnapshot.keySet(), committed -> executeWithConnection(conn -> {
+                    setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                            CommitBehaviour.DO_NOT_AUTO_COMMIT, READ_WRITE);
+                    Account.updateAccountAmounts(conn, pendingSnapshot);
+                    //noinspection ReturnOfNull
+                    return null;
+                }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+                // row versions of the written accounts are unknown, accounts are served by this engine anyway
+                AccountCache.invalidate(pendingSnapshot.keySet());
+                LOGGER.info("Snapshot of {} accounts written", pendingSnapshot.size());
+                pendingSnapshot.clear();
+            }
+            journal.deleteSegmentsUpTo(closedSegment);
+        }
+    }
+
+    /**
+     * Ring buffer slot, reused for all events published to the sequencer
+     */
+    private static final class LedgerEvent {
+        private @Nullable Transfer transfer;
+        private @Nullable TransferBatch batch;
+        private @Nullable CompletableFuture<Object> result;
+
+        void transfer(final @NotNull Transfer transfer, final @NotNull CompletableFuture<Object> result) {
+            this.transfer = transfer;
+            this.result = result;
+        }
+
+        void batch(final @NotNull TransferBatch batch, final @NotNull CompletableFuture<Object> result) {
+            this.batch = batch;
+            this.result = result;
+        }
+
+        void snapshot(final @NotNull CompletableFuture<Object> result) {
+            this.result = result;
+        }
+
+        void clear() {
+            transfer = null;
+            batch = null;
+            result = null;
+        }
+    }
+
+    /**
+     * Single writer of account amounts. Callers of applied transfers are released at the end of every batch
+     * of ring buffer events once the journal is flushed, so a single flush is shared by all transfers
+     * published meanwhile. Amounts changed by the unflushed transfers are kept by the sequencer and published
+     * to readers only once the flush completes, so readers never see amounts which could be lost by a crash
+     */
+    private final class Sequencer implements EventHandler<LedgerEvent> {
+        private final Map<String, Long> changed;
+        private final Map<String, Long> unflushedAmounts = new HashMap<>();
+        private final List<CompletableFuture<Object>> unflushed = new ArrayList<>();
+        private final List<Object> unflushedValues = new ArrayList<>();
+
+        Sequencer(final @NotNull Map<String, Long> recovered) {
+            changed = new HashMap<>(recovered);
+        }
+
+        /**
+         * Unexpected failure of an event fails the engine rather than the sequencer thread, so callers
+         * of the published events are released instead of waiting forever
+         */
+        @Override
+        public void onEvent(final LedgerEvent event, final long sequence, final boolean endOfBatch) {
+            final CompletableFuture<Object> result = event.result;
+            final Transfer transfer = event.transfer;
+            final TransferBatch batch = event.batch;
+            event.clear();
+            try {
+                if (result != null) {
+                    if (transfer == null && batch == null) {
+                        onSnapshot(result);
+                    } else if (failure != null) {
+                        result.completeExceptionally(new GenericException("Ledger is unavailable", failure));
+                    } else if (transfer != null) {
+                        onTransfer(transfer, result);
+                    } else {
+                        onBatch(batch, result);
+                    }
+                }
+                if (endOfBatch && !unflushed.isEmpty()) {
+                    flush();
+                }
+            } catch (RuntimeException e) {
+                fail(new GenericException("Sequencer failed", e));
+                if (result != null) {
+                    result.completeExceptionally(failure);
+                }
+                unflushed.forEach(unflushedResult -> unflushedResult.completeExceptionally(failure));
+                unflushed.clear();
+                unflushedValues.clear();
+                unflushedAmounts.clear();
+            }
+        }
+
+        private void onTransfer(final @NotNull Transfer transfer, final @NotNull CompletableFuture<Object> result) {
+            final String sourceAccountId = transfer.getSourceAccountId();
+            final String targetAccountId = transfer.getTargetAccountId();
+            final long creditedSourceAccountAmount;
+            final long debitedTargetAccountAmount;
+            try {
+                creditedSourceAccountAmount = transfer.debit(getAmount(sourceAccountId));
+                debitedTargetAccountAmount = transfer.credit(getAmount(targetAccountId));
+            } catch (GenericException e) {
+                result.completeExceptionally(e);
+                return;
+            } catch (RuntimeException e) {
+                // nothing is changed yet, e.g. amount overflow, so only this transfer fails
+                LOGGER.error("Transfer {} failed", transfer, e);
+                result.completeExceptionally(new GenericException("Failed to apply " + transfer, e));
+                return;
+            }
+            try {
+                journal.append(sourceAccountId, creditedSourceAccountAmount,
+                        targetAccountId, debitedTargetAccountAmount);
+            } catch (IOException | RuntimeException e) {
+                fail(new GenericException("Journal append failed for transfer " + transfer, e));
+                result.completeExceptionally(failure);
+                return;
+            }
+            unflushedAmounts.put(sourceAccountId, creditedSourceAccountAmount);
+            unflushedAmounts.put(targetAccountId, debitedTargetAccountAmount);
+            changed.put(sourceAccountId, creditedSourceAccountAmount);
+            changed.put(targetAccountId, debitedTargetAccountAmount);
+            completeOnFlush(result, null);
+        }
+
+        private void onBatch(final @NotNull TransferBatch batch, final @NotNull CompletableFuture<Object> result) {
+            final Map<String, Long> current = new HashMap<>();
+            for (final String id : batch.getAccountIds()) {
+                final Long amount = getAmountIfExists(id);
+                if (amount != null) {
+                    current.put(id, amount);
+                }
+            }
+            final Map<String, Long> batchChanged = new HashMap<>();
+            final List<TransferResult> results;
+            try {
+                results = batch.apply(current, batchChanged);
+            } catch (RuntimeException e) {
+                LOGGER.error("Transfer batch {} failed", batch, e);
+                result.completeExceptionally(new GenericException("Failed to apply " + batch, e));
+                return;
+            }
+            if (batchChanged.isEmpty()) {
+                result.complete(results);
+                return;
+            }
+            try {
+                journal.append(batchChanged);
+            } catch (IOException | RuntimeException e) {
+                fail(new GenericException("Journal append failed for " + batch, e));
+                result.completeExceptionally(failure);
+                return;
+            }
+            unflushedAmounts.putAll(batchChanged);
+            changed.putAll(batchChanged);
+            completeOnFlush(result, results);
+        }
+
+        /**
+         * @return amount of the account including unflushed transfers
+         * @throws NoSuchAccountException if account doesn't exist
+         */
+        private long getAmount(final @NotNull String id) throws GenericException {
+            final Long amount = unflushedAmounts.get(id);
+            return amount == null ? getAccount(id).getAmount() : amount;
+        }
+
+        private @Nullable Long getAmountIfExists(final @NotNull String id) {
+            final Long amount = unflushedAmounts.get(id);
+            return amount == null ? amounts.get(id) : amount;
+        }
+
+        private void onSnapshot(final @NotNull CompletableFuture<Object> result) {
+            final long closedSegment;
+            if (!unflushed.isEmpty()) {
+                flush();
+            }
+            if (failure != null) {
+                // changes may be ahead of the journal, so they are not written to the database
+                result.completeExceptionally(new GenericException("Ledger is unavailable", failure));
+                return;
+            }
+            try {
+                closedSegment = journal.rotate();
+            } catch (IOException e) {
+                fail(new GenericException("Journal rotation failed", e));
+                result.completeExceptionally(failure);
+                return;
+            }
+            final Map<String, Long> snapshot = new HashMap<>(changed);
+            changed.clear();
+            final Runnable task = () -> {
+                try {
+                    writeSnapshot(snapshot, closedSegment);
+                    result.complete(null);
+                } catch (GenericException e) {
+                    LOGGER.error("Snapshot failed, will be retried", e);
+                    result.completeExceptionally(e);
+                }
+            };
+            try {
+                snapshotExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // engine is stopping, final snapshot is written synchronously
+                task.run();
+            }
+        }
+
+        private void completeOnFlush(final @NotNull CompletableFuture<Object> result, final @Nullable Object value) {
+            unflushed.add(result);
+            unflushedValues.add(value);
+        }
+
+        private void flush() {
+            try {
+                journal.flush();
+                amounts.putAll(unflushedAmounts);
+                for (int i = 0; i < unflushed.size(); i++) {
+                    unflushed.get(i).complete(unflushedValues.get(i));
+                }
+            } catch (IOException e) {
+                fail(new GenericException("Journal flush failed", e));
+                unflushed.forEach(result -> result.completeExceptionally(failure));
+            }
+            unflushed.clear();
+            unflushedValues.clear();
+            unflushedAmounts.clear();
+        }
+
+        /**
+         * In-memory amounts may be ahead of the journal after a write failure, so engine stops accepting transfers
+         */
+        private void fail(final @NotNull GenericException e) {
+            LOGGER.error("Ledger journal failure, no more transfers will be accepted", e);
+            failure = e;
+        }
+    }
+}
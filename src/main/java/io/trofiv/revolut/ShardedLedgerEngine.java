@@ -0,0 +1,163 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ledger engine which hashes account ids onto {@code ledger.shards} shards, every shard has its own
+ * single-threaded lane. A transfer between accounts of the same shard is applied by the lane of that shard,
+ * a transfer between two shards is handed off from the lower shard lane to the higher one, and the lower lane
+ * is held until the transfer is applied. Lanes are always taken in ascending order, so handoffs can't deadlock.
+ * Since every account is mutated by a single lane at a time, database row locks taken by the transfer
+ * are never contended by other transfers, and request threads don't block on them
+ */
+@Singleton
+public class ShardedLedgerEngine extends JdbcLedgerEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private final ExecutorService[] lanes;
+    private volatile boolean stopped;
+
+    /**
+     * @param shards number of shards, {@code 0} means number of available processors
+     */
+    @Inject
+    public ShardedLedgerEngine(@Named("ledger.shards") final int shards) {
+        final int size = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("ledger-shard-%d").setDaemon(true).build();
+        lanes = new ExecutorService[size];
+        for (int i = 0; i < size; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+        LOGGER.info("Ledger is sharded into {} lanes", size);
+    }
+
+    /**
+     * Applies already submitted transfers and stops the lanes. Lanes are stopped in ascending order,
+     * so lanes which can still receive a handoff are running until all lower lanes are drained
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        for (final ExecutorService lane : lanes) {
+            lane.shutdown();
+            try {
+                lane.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        try {
+            transferAsync(transfer).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GenericException("Interrupted while waiting for " + transfer, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GenericException) {
+                throw (GenericException) e.getCause();
+            }
+            throw new GenericException("Failed to apply " + transfer, e.getCause());
+        }
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            transfer.validate();
+            if (stopped) {
+                throw new GenericException("Ledger is stopped");
+            }
+        } catch (GenericException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        final int source = getShard(transfer.getSourceAccountId());
+        final int target = getShard(transfer.getTargetAccountId());
+        if (source == target) {
+            submit(source, () -> apply(transfer, result), result);
+        } else {
+            final int first = Math.min(source, target);
+            final int second = Math.max(source, target);
+            submit(first, () -> handOff(second, transfer, result), result);
+        }
+        return result;
+    }
+
+    /**
+     * @param accountId account id
+     * @return index of the shard which owns the account
+     */
+    int getShard(final @NotNull String accountId) {
+        final int hash = accountId.hashCode();
+        // spreads higher bits, since sequential ids differ mostly in lower ones
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Runs in the lower shard lane: passes the transfer to the higher shard lane and holds
+     * the lower lane until the transfer is applied
+     */
+    private void handOff(
+            final int shard,
+            final @NotNull Transfer transfer,
+            final @NotNull CompletableFuture<Void> result) {
+        final CountDownLatch applied = new CountDownLatch(1);
+        final boolean submitted = submit(shard, () -> {
+            try {
+                apply(transfer, result);
+            } finally {
+                applied.countDown();
+            }
+        }, result);
+        if (submitted) {
+            Uninterruptibles.awaitUninterruptibly(applied);
+        }
+    }
+
+    private boolean submit(
+            final int shard,
+            final @NotNull Runnable task,
+            final @NotNull CompletableFuture<Void> result) {
+        try {
+            lanes[shard].execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new GenericException("Ledger is stopped"));
+            return false;
+        }
+    }
+
+    private static void apply(final @NotNull Transfer transfer, final @NotNull CompletableFuture<Void> result) {
+        try {
+            transfer.makeTransfer();
+            result.complete(null);
+        } catch (GenericException e) {
+            result.completeExceptionally(e);
+        } catch (RuntimeException e) {
+            result.completeExceptionally(new GenericException("Failed to apply " + transfer, e));
+        }
+    }
+}
@@ -1,25 +1,40 @@
 package io.trofiv.revolut;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.base.MoreObjects;
+import io.trofiv.revolut.Account.VersionedAmount;
 import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
 import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.DuplicateRequestException;
 import io.trofiv.revolut.exception.GenericException;
 import io.trofiv.revolut.exception.InvalidRequestException;
 import io.trofiv.revolut.exception.NoSuchAccountException;
 import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.invoke.MethodHandles;
-import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
 
+import static io.trofiv.revolut.Account.creditAccountById;
+import static io.trofiv.revolut.Account.debitAccountById;
 import static io.trofiv.revolut.Account.getAccountById;
+import static io.trofiv.revolut.Account.getVersionedAmountById;
 import static io.trofiv.revolut.Account.updateAccountAmountById;
+import static io.trofiv.revolut.Account.updateAccountAmountIfVersion;
 import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
 import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
 import static java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
 
 /**
  * Describes both model and operations related to transfers between accounts
@@ -28,23 +43,108 @@ public class Transfer {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
     private static final boolean NO_AUTO_COMMIT = false;
     private static final boolean FOR_UPDATE = true;
+    // rejections with constant messages are shared, they are stackless and immutable
+    private static final InvalidRequestException ACCOUNTS_NOT_SPECIFIED =
+            new InvalidRequestException("Source and target accounts must be specified!");
+    private static final InvalidRequestException SAME_ACCOUNTS =
+            new InvalidRequestException("Source and target accounts can't be the same!");
 
     private final String sourceAccountId;
     private final String targetAccountId;
-    private final BigDecimal amount;
+    private final long amount;
+    private final String idempotencyKey;
 
+    /**
+     * @param sourceAccountId credited account id
+     * @param targetAccountId debited account id
+     * @param amount          transfer amount in {@link Money} minor units
+     */
     @JsonCreator
     public Transfer(
             @JsonProperty("sourceAccountId") final String sourceAccountId,
             @JsonProperty("targetAccountId") final String targetAccountId,
-            @JsonProperty("amount") final String amount) {
+            @JsonProperty("amount") @JsonDeserialize(using = Money.Deserializer.class) final long amount) {
+        this(sourceAccountId, targetAccountId, amount, null);
+    }
+
+    private Transfer(
+            final String sourceAccountId,
+            final String targetAccountId,
+            final long amount,
+            final @Nullable String idempotencyKey) {
         this.sourceAccountId = sourceAccountId;
         this.targetAccountId = targetAccountId;
-        this.amount = new BigDecimal(amount);
+        this.amount = amount;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    /**
+     * @param key idempotency key of the request
+     * @return the same transfer which records the key by the transaction applying it, so it can be applied
+     * only once with {@link #makeTransfer()} and its alternatives
+     */
+    @NotNull Transfer withIdempotencyKey(final @NotNull String key) {
+        return new Transfer(sourceAccountId, targetAccountId, amount, key);
+    }
+
+    /**
+     * @return idempotency key of the request, {@code null} if transfer is not idempotent
+     */
+    @Nullable String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    @JsonGetter
+    public String getSourceAccountId() {
+        return sourceAccountId;
+    }
+
+    @JsonGetter
+    public String getTargetAccountId() {
+        return targetAccountId;
+    }
+
+    /**
+     * @return transfer amount in {@link Money} minor units
+     */
+    @JsonGetter
+    @JsonSerialize(using = Money.Serializer.class)
+    public long getAmount() {
+        return amount;
     }
 
     /**
-     * Performs a transfer between specified accounts for the specified amount
+     * Checks that transfer can be performed regardless of the accounts state
+     *
+     * @throws InvalidRequestException if specified amount is not positive or source and target accounts are the same
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void validate() throws InvalidRequestException {
+        if (sourceAccountId == null || targetAccountId == null) {
+            LOGGER.debug("Source and target accounts must be specified: '{}', '{}'", sourceAccountId, targetAccountId);
+            throw ACCOUNTS_NOT_SPECIFIED;
+        }
+        if (amount <= 0) {
+            LOGGER.debug("Transfer from '{}' to '{}': {}", sourceAccountId, targetAccountId, amount);
+            throw new InvalidRequestException("Amount must be positive! Got: " + Money.toPlainString(amount));
+        }
+        if (sourceAccountId.equals(targetAccountId)) {
+            LOGGER.debug("Source and target accounts can't be the same: {}", sourceAccountId);
+            throw SAME_ACCOUNTS;
+        }
+    }
+
+    /**
+     * @return whether transfer can be performed regardless of the accounts state
+     */
+    boolean isValid() {
+        return sourceAccountId != null && targetAccountId != null
+                && amount > 0 && !sourceAccountId.equals(targetAccountId);
+    }
+
+    /**
+     * Performs a transfer between specified accounts for the specified amount. Transfer is appended
+     * to {@link TransferHistory} by the same transaction, as it is by all alternatives of this method
      *
      * @throws InvalidRequestException if specified amount is not positive or source and target accounts are the same
      * @throws NotEnoughMoneyException if credited account has insufficient funds
@@ -53,40 +153,235 @@ public class Transfer {
      */
     @SuppressWarnings("WeakerAccess")
     public void makeTransfer() throws GenericException {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            LOGGER.error("Transfer from '{}' to '{}': {}", sourceAccountId, targetAccountId, amount);
-            throw new InvalidRequestException("Amount must be positive! Got: " + amount);
-        }
-        if (sourceAccountId.equals(targetAccountId)) {
-            LOGGER.error("Source and target accounts can't be the same: {}", sourceAccountId);
-            throw new InvalidRequestException("Source and target accounts can't be the same!");
-        }
+        validate();
         final boolean sourceAccountLockFirst = sourceAccountId.compareTo(targetAccountId) < 0;
-        executeWithConnection(conn -> {
+        final List<String> accountIds = Arrays.asList(sourceAccountId, targetAccountId);
+        final long[] lockWait = new long[1];
+        try {
+            makeTransfer(accountIds, sourceAccountLockFirst, lockWait);
+        } finally {
+            HotAccounts.recordContention(sourceAccountId, targetAccountId, lockWait[0], false);
+        }
+    }
+
+    /**
+     * @param lockWait receives time spent waiting for account row locks, recorded as contention once they are released
+     */
+    private void makeTransfer(
+            final @NotNull List<String> accountIds,
+            final boolean sourceAccountLockFirst,
+            final long[] lockWait)
+            throws GenericException {
+        AccountCache.writeThrough(accountIds, committed -> executeWithConnection(conn -> {
             setTransactionPolicyForConnection(conn, TRANSACTION_REPEATABLE_READ,
                     CommitBehaviour.DO_NOT_AUTO_COMMIT, NO_AUTO_COMMIT);
-            final Account sourceAccount;
-            final Account targetAccount;
+            recordIdempotencyKey(conn);
+            final VersionedAmount sourceAccount;
+            final VersionedAmount targetAccount;
             // account query ordering is needed in order do don't get deadlock
+            final long lockStart = System.nanoTime();
             if (sourceAccountLockFirst) {
-                sourceAccount = getAccountById(sourceAccountId, conn, FOR_UPDATE);
-                targetAccount = getAccountById(targetAccountId, conn, FOR_UPDATE);
+                sourceAccount = getVersionedAmountById(conn, sourceAccountId, FOR_UPDATE);
+                targetAccount = getVersionedAmountById(conn, targetAccountId, FOR_UPDATE);
             } else {
-                targetAccount = getAccountById(targetAccountId, conn, FOR_UPDATE);
-                sourceAccount = getAccountById(sourceAccountId, conn, FOR_UPDATE);
-            }
-            final BigDecimal creditedSourceAccountAmount = sourceAccount.getAmount().subtract(amount);
-            if (creditedSourceAccountAmount.compareTo(BigDecimal.ZERO) < 0) {
-                throw new NotEnoughMoneyException("Credited account has insufficient funds for credit "
-                        + amount + ": " + sourceAccount.getAmount());
+                targetAccount = getVersionedAmountById(conn, targetAccountId, FOR_UPDATE);
+                sourceAccount = getVersionedAmountById(conn, sourceAccountId, FOR_UPDATE);
             }
-            final BigDecimal debitedTargetAccountAmount = targetAccount.getAmount().add(amount);
+            lockWait[0] = System.nanoTime() - lockStart;
+            Metrics.TRANSFER_LOCK_WAIT.recordNanos(lockWait[0]);
+            final long creditedSourceAccountAmount = debit(sourceAccount.getAmount());
+            final long debitedTargetAccountAmount = credit(targetAccount.getAmount());
             updateAccountAmountById(conn, sourceAccountId, creditedSourceAccountAmount);
             updateAccountAmountById(conn, targetAccountId, debitedTargetAccountAmount);
-            LOGGER.info("Transfer {}", this);
+            TransferHistory.append(conn, this);
+            // every update increments the row version
+            committed.put(sourceAccountId,
+                    new VersionedAmount(creditedSourceAccountAmount, sourceAccount.getVersion() + 1));
+            committed.put(targetAccountId,
+                    new VersionedAmount(debitedTargetAccountAmount, targetAccount.getVersion() + 1));
+            LOGGER.debug("Transfer {}", this);
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+    }
+
+    /**
+     * Performs the transfer with two statements doing the arithmetic in the database: a debit guarded by
+     * the funds check and a credit. Statements are executed in account id order to avoid deadlocks.
+     * Resulting amounts are read back by the same transaction only if {@link AccountCache} is enabled.
+     * If any statement changed nothing, accounts are read to report the reason
+     *
+     * @throws InvalidRequestException if specified amount is not positive or source and target accounts are the same
+     * @throws NotEnoughMoneyException if credited account has insufficient funds
+     * @throws NoSuchAccountException  if either credited or debited account dosen't exist
+     * @throws GenericException        if any database error has occurred
+     */
+    void makeAtomicTransfer() throws GenericException {
+        validate();
+        final boolean sourceAccountUpdateFirst = sourceAccountId.compareTo(targetAccountId) < 0;
+        final List<String> accountIds = Arrays.asList(sourceAccountId, targetAccountId);
+        final long[] lockWait = new long[1];
+        try {
+            makeAtomicTransfer(accountIds, sourceAccountUpdateFirst, lockWait);
+        } finally {
+            HotAccounts.recordContention(sourceAccountId, targetAccountId, lockWait[0], false);
+        }
+    }
+
+    /**
+     * @param lockWait receives time spent waiting for account row locks, recorded as contention once they are released
+     */
+    private void makeAtomicTransfer(
+            final @NotNull List<String> accountIds,
+            final boolean sourceAccountUpdateFirst,
+            final long[] lockWait)
+            throws GenericException {
+        AccountCache.writeThrough(accountIds, committed -> executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, NO_AUTO_COMMIT);
+            recordIdempotencyKey(conn);
+            final long lockStart = System.nanoTime();
+            final boolean updated = sourceAccountUpdateFirst
+                    ? debitAccountById(conn, sourceAccountId, amount)
+                    && creditAccountById(conn, targetAccountId, amount)
+                    : creditAccountById(conn, targetAccountId, amount)
+                    && debitAccountById(conn, sourceAccountId, amount);
+            lockWait[0] = System.nanoTime() - lockStart;
+            Metrics.TRANSFER_LOCK_WAIT.recordNanos(lockWait[0]);
+            if (!updated) {
+                throw getAtomicTransferFailure(conn);
+            }
+            TransferHistory.append(conn, this);
+            if (AccountCache.isEnabled()) {
+                // updated rows stay locked by the transaction, so their amounts and versions are the committed ones
+                committed.put(sourceAccountId, getVersionedAmountById(conn, sourceAccountId));
+                committed.put(targetAccountId, getVersionedAmountById(conn, targetAccountId));
+            }
+            LOGGER.debug("Transfer {}", this);
             //noinspection ReturnOfNull
             return null;
-        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT);
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+    }
+
+    /**
+     * Resolves why atomic transfer statements changed nothing, with the same precedence of reasons as
+     * {@link #makeTransfer()} reports them
+     */
+    private @NotNull GenericException getAtomicTransferFailure(final @NotNull Connection conn) {
+        try {
+            final Account sourceAccount = getAccountById(sourceAccountId, conn);
+            final Account targetAccount = getAccountById(targetAccountId, conn);
+            debit(sourceAccount.getAmount());
+            credit(targetAccount.getAmount());
+            // funds were insufficient when debited, but a concurrent transfer has added them since
+            return new NotEnoughMoneyException("Credited account has insufficient funds for credit "
+                    + Money.toPlainString(amount));
+        } catch (GenericException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Tries to perform the transfer without locking accounts on read. Amounts are read with their row versions
+     * and updated only if the versions are unchanged. Updates are applied in account id order,
+     * so concurrent transfers don't deadlock on row locks taken by updates
+     *
+     * @return whether transfer is performed, {@code false} if any of the accounts was changed concurrently,
+     * nothing is changed in this case
+     * @throws InvalidRequestException if specified amount is not positive or source and target accounts are the same
+     * @throws NotEnoughMoneyException if credited account has insufficient funds
+     * @throws NoSuchAccountException  if either credited or debited account dosen't exist
+     * @throws GenericException        if any database error has occurred
+     */
+    boolean tryOptimisticTransfer() throws GenericException {
+        validate();
+        final boolean sourceAccountUpdateFirst = sourceAccountId.compareTo(targetAccountId) < 0;
+        final List<String> accountIds = Arrays.asList(sourceAccountId, targetAccountId);
+        return AccountCache.writeThrough(accountIds, committed -> executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, NO_AUTO_COMMIT);
+            recordIdempotencyKey(conn);
+            final VersionedAmount sourceAccount = getVersionedAmountById(conn, sourceAccountId);
+            final VersionedAmount targetAccount = getVersionedAmountById(conn, targetAccountId);
+            final long creditedSourceAccountAmount = debit(sourceAccount.getAmount());
+            final long debitedTargetAccountAmount = credit(targetAccount.getAmount());
+            final boolean updated = sourceAccountUpdateFirst
+                    ? updateAccountAmountIfVersion(conn, sourceAccountId,
+                    creditedSourceAccountAmount, sourceAccount.getVersion())
+                    && updateAccountAmountIfVersion(conn, targetAccountId,
+                    debitedTargetAccountAmount, targetAccount.getVersion())
+                    : updateAccountAmountIfVersion(conn, targetAccountId,
+                    debitedTargetAccountAmount, targetAccount.getVersion())
+                    && updateAccountAmountIfVersion(conn, sourceAccountId,
+                    creditedSourceAccountAmount, sourceAccount.getVersion());
+            if (!updated) {
+                conn.rollback();
+                LOGGER.debug("Transfer {} conflicted with a concurrent change", this);
+                return false;
+            }
+            TransferHistory.append(conn, this);
+            committed.put(sourceAccountId,
+                    new VersionedAmount(creditedSourceAccountAmount, sourceAccount.getVersion() + 1));
+            committed.put(targetAccountId,
+                    new VersionedAmount(debitedTargetAccountAmount, targetAccount.getVersion() + 1));
+            LOGGER.debug("Transfer {}", this);
+            return true;
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+    }
+
+    /**
+     * Records idempotency key of the transfer with successful outcome if transfer has it, should be the first
+     * statement of the transaction applying the transfer
+     *
+     * @param conn SQL connection of the transaction applying the transfer
+     * @throws DuplicateRequestException if transfer with the same key is already applied or is being applied
+     * @throws GenericException          if any other database-related error has occurred
+     */
+    void recordIdempotencyKey(final @NotNull Connection conn) throws GenericException {
+        if (idempotencyKey != null) {
+            IdempotencyStore.insertKey(conn, idempotencyKey, NO_CONTENT.getCode());
+        }
+    }
+
+    /**
+     * Replaces successful outcome recorded by {@link #recordIdempotencyKey} with the outcome of the failed transfer
+     * if transfer has idempotency key. Keys of transfers failed without being rejected are removed, so they can
+     * be retried with the same key
+     *
+     * @param conn   SQL connection of the transaction which recorded the key
+     * @param result outcome of the transfer
+     * @throws GenericException if any database-related error has occurred
+     */
+    void recordIdempotencyOutcome(final @NotNull Connection conn, final @NotNull TransferResult result)
+            throws GenericException {
+        if (idempotencyKey != null && !result.isSuccessful()) {
+            IdempotencyStore.updateKey(conn, idempotencyKey, IdempotencyStore.getRejectionStatus(result.getCause()));
+        }
+    }
+
+    /**
+     * Calculates source account amount after this transfer
+     *
+     * @param sourceAccountAmount current source account amount in {@link Money} minor units
+     * @return source account amount reduced by transfer amount
+     * @throws NotEnoughMoneyException if source account amount is less than transfer amount
+     */
+    long debit(final long sourceAccountAmount) throws NotEnoughMoneyException {
+        if (sourceAccountAmount < amount) {
+            throw new NotEnoughMoneyException("Credited account has insufficient funds for credit "
+                    + Money.toPlainString(amount) + ": " + Money.toPlainString(sourceAccountAmount));
+        }
+        return sourceAccountAmount - amount;
+    }
+
+    /**
+     * Calculates target account amount after this transfer
+     *
+     * @param targetAccountAmount current target account amount in {@link Money} minor units
+     * @return target account amount increased by transfer amount
+     */
+    long credit(final long targetAccountAmount) {
+        return Math.addExact(targetAccountAmount, amount);
     }
 
     @Override
@@ -94,7 +389,7 @@ public class Transfer {
         return MoreObjects.toStringHelper(this)
                 .add("sourceAccountId", sourceAccountId)
                 .add("targetAccountId", targetAccountId)
-                .add("amount", amount)
+                .add("amount", Money.toPlainString(amount))
                 .toString();
     }
 }
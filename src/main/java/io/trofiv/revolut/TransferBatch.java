@@ -0,0 +1,211 @@
+package io.trofiv.revolut;
+
+import com.google.common.base.MoreObjects;
+import io.trofiv.revolut.Account.VersionedAmount;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.DuplicateRequestException;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+
+/**
+ * Describes both model and operations related to a batch of transfers applied in a single transaction
+ */
+public class TransferBatch {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final boolean READ_WRITE = false;
+
+    private final List<Transfer> transfers;
+    private final BatchMode mode;
+
+    public TransferBatch(final @NotNull List<Transfer> transfers, final @NotNull BatchMode mode) {
+        this.transfers = transfers;
+        this.mode = mode;
+    }
+
+    public @NotNull List<Transfer> getTransfers() {
+        return Collections.unmodifiableList(transfers);
+    }
+
+    public @NotNull BatchMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Performs all transfers of the batch in a single database transaction. All involved accounts are locked
+     * in the same order as single transfers lock them, transfers are applied in the batch order and changed
+     * accounts are written with a single JDBC batch. Idempotency keys of the transfers are recorded with applied
+     * and rejected outcomes before accounts are locked, and the applied transfers are appended
+     * to {@link TransferHistory} by the same transaction
+     *
+     * @return result of every transfer in the batch order
+     * @throws DuplicateRequestException if any transfer has an already used idempotency key,
+     *                                   no transfers are applied in this case
+     * @throws GenericException          if any database error has occurred, no transfers are applied in this case
+     */
+    @SuppressWarnings("WeakerAccess")
+    public @NotNull List<TransferResult> execute() throws GenericException {
+        final SortedSet<String> accountIds = getAccountIds();
+        if (accountIds.isEmpty()) {
+            return apply(Collections.emptyMap(), new HashMap<>());
+        }
+        return AccountCache.writeThrough(accountIds, committed -> executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_REPEATABLE_READ,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, READ_WRITE);
+            // keys are recorded before accounts are locked, so a duplicate batch fails without waiting for locks
+            for (final Transfer transfer : transfers) {
+                transfer.recordIdempotencyKey(conn);
+            }
+            final long lockStart = System.nanoTime();
+            final Map<String, Long> versions = new HashMap<>(accountIds.size() * 2);
+            final Map<String, Long> amounts = Account.lockAccounts(conn, accountIds, versions);
+            Metrics.TRANSFER_LOCK_WAIT.recordNanos(System.nanoTime() - lockStart);
+            final Map<String, Long> changed = new HashMap<>();
+            final List<TransferResult> results = apply(amounts, changed);
+            final List<Transfer> applied = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                transfers.get(i).recordIdempotencyOutcome(conn, results.get(i));
+                if (results.get(i).isSuccessful()) {
+                    applied.add(transfers.get(i));
+                }
+            }
+            if (!changed.isEmpty()) {
+                Account.updateAccountAmounts(conn, changed);
+                TransferHistory.append(conn, applied);
+                // every changed account is updated once, which increments its row version
+                changed.forEach((id, amount) -> committed.put(id, new VersionedAmount(amount, versions.get(id) + 1)));
+            }
+            return results;
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+    }
+
+    /**
+     * @return ids of all accounts involved by valid transfers of the batch in the lock order
+     */
+    @NotNull SortedSet<String> getAccountIds() {
+        final SortedSet<String> accountIds = new TreeSet<>();
+        for (final Transfer transfer : transfers) {
+            if (transfer.isValid()) {
+                accountIds.add(transfer.getSourceAccountId());
+                accountIds.add(transfer.getTargetAccountId());
+            }
+        }
+        return accountIds;
+    }
+
+    /**
+     * Applies transfers of the batch in order without persisting them
+     *
+     * @param amounts current amounts in {@link Money} minor units of all existing involved accounts
+     * @param changed collects new amounts of the changed accounts, left empty if batch is rolled back
+     * @return result of every transfer in the batch order
+     */
+    @NotNull List<TransferResult> apply(
+            final @NotNull Map<String, Long> amounts,
+            final @NotNull Map<String, Long> changed) {
+        final List<TransferResult> results = new ArrayList<>(transfers.size());
+        boolean failed = false;
+        for (final Transfer transfer : transfers) {
+            try {
+                transfer.validate();
+                final long sourceAccountAmount = getAmount(transfer.getSourceAccountId(), amounts, changed);
+                final long targetAccountAmount = getAmount(transfer.getTargetAccountId(), amounts, changed);
+                final long creditedSourceAccountAmount = transfer.debit(sourceAccountAmount);
+                final long debitedTargetAccountAmount = transfer.credit(targetAccountAmount);
+                changed.put(transfer.getSourceAccountId(), creditedSourceAccountAmount);
+                changed.put(transfer.getTargetAccountId(), debitedTargetAccountAmount);
+                results.add(TransferResult.success());
+            } catch (GenericException e) {
+                results.add(TransferResult.failure(e));
+                failed = true;
+            }
+        }
+        if (failed && mode == BatchMode.ALL_OR_NOTHING) {
+            changed.clear();
+            LOGGER.info("Transfer batch of {} is rolled back", transfers.size());
+            return TransferResult.rollback(results);
+        }
+        LOGGER.debug("Transfer batch of {} applied, {} accounts changed", transfers.size(), changed.size());
+        return results;
+    }
+
+    private static long getAmount(
+            final @NotNull String id,
+            final @NotNull Map<String, Long> amounts,
+            final @NotNull Map<String, Long> changed)
+            throws NoSuchAccountException {
+        Long amount = changed.get(id);
+        if (amount == null) {
+            amount = amounts.get(id);
+        }
+        if (amount == null) {
+            throw new NoSuchAccountException("Account " + id + " does not exist");
+        }
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("transfers", transfers.size())
+                .add("mode", mode)
+                .toString();
+    }
+
+    /**
+     * Describes how batch with failed transfers is applied
+     */
+    @SuppressWarnings("PublicInnerClass")
+    public enum BatchMode {
+        /**
+         * No transfers are applied if any of them failed
+         */
+        ALL_OR_NOTHING("all-or-nothing"),
+        /**
+         * Successful transfers are applied regardless of failed ones
+         */
+        PER_ITEM("per-item");
+
+        private final String name;
+
+        BatchMode(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param name mode name, either {@code all-or-nothing} or {@code per-item}
+         * @return batch mode with the specified name
+         * @throws InvalidRequestException if there is no mode with the specified name
+         */
+        public static @NotNull BatchMode fromName(final String name) throws InvalidRequestException {
+            for (final BatchMode mode : values()) {
+                if (mode.name.equals(name)) {
+                    return mode;
+                }
+            }
+            throw new InvalidRequestException("Unknown batch mode: " + name);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
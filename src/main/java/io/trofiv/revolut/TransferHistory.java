@@ -0,0 +1,198 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.prepareCachedStatement;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Append-only history of committed transfers kept in {@code TRANSFERS} table. Every transfer is appended
+ * by the transaction updating the account amounts and gets a sequence number from the table identity,
+ * so history can be read incrementally by the sequence number without scanning it
+ */
+@SuppressWarnings({"UtilityClassCanBeEnum", "SqlNoDataSourceInspection", "SqlResolve"})
+final class TransferHistory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final String INSERT = "INSERT INTO TRANSFERS(SOURCE_ACCOUNT_ID, TARGET_ACCOUNT_ID, AMOUNT, "
+            + "IDEMPOTENCY_KEY, APPLIED_AT) VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP())";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    /**
+     * Max number of transfers read by a single query
+     */
+    static final int PAGE_SIZE = 1000;
+
+    private static final int ROW_SIZE_ESTIMATE = 160;
+    private static final boolean READ_ONLY = true;
+
+    private TransferHistory() {
+    }
+
+    /**
+     * Appends the transfer to the history using specified sql connection, should be called by the transaction
+     * applying the transfer
+     *
+     * @param conn     SQL connection of the transaction applying the transfer
+     * @param transfer applied transfer
+     * @throws GenericException if any database-related error has occurred
+     */
+    static void append(final @NotNull Connection conn, final @NotNull Transfer transfer) throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, INSERT);
+            setParameters(ps, transfer);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.error("Transfer history append failed for {}", transfer, e);
+            throw new GenericException("Transfer history append failed for " + transfer, e);
+        }
+    }
+
+    /**
+     * Appends the transfers to the history in the specified order with a single JDBC batch using
+     * specified sql connection, should be called by the transaction applying the transfers
+     *
+     * @param conn      SQL connection of the transaction applying the transfers
+     * @param transfers applied transfers in the order they are applied
+     * @throws GenericException if any database-related error has occurred
+     */
+    static void append(final @NotNull Connection conn, final @NotNull List<Transfer> transfers)
+            throws GenericException {
+        try {
+            final PreparedStatement ps = prepareCachedStatement(conn, INSERT);
+            for (final Transfer transfer : transfers) {
+                setParameters(ps, transfer);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            LOGGER.error("Transfer history append failed for {} transfers", transfers.size(), e);
+            throw new GenericException("Transfer history append failed for " + transfers.size() + " transfers", e);
+        }
+    }
+
+    /**
+     * Reads committed transfers with sequence numbers greater than the specified one as newline delimited
+     * JSON objects in the sequence order into a buffer, so the connection is released before the page is written
+     * to a client. A transfer committed concurrently may get a lower sequence number than an already visible one,
+     * so readers tailing the history should stay behind its head
+     *
+     * @param afterSeq sequence number of the last transfer already read, {@code 0} to read from the start
+     * @param limit    max number of transfers to read, should be at most {@link #PAGE_SIZE}
+     * @return page of the read transfers
+     * @throws GenericException if any database-related error has occurred
+     */
+    static @NotNull Page readPage(final long afterSeq, final int limit) throws GenericException {
+        return executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+            try (final PreparedStatement ps = conn.prepareStatement(
+                    "SELECT * FROM TRANSFERS WHERE SEQ > ? ORDER BY SEQ LIMIT ?")) {
+                ps.setLong(1, afterSeq);
+                ps.setInt(2, limit);
+                ps.setFetchSize(limit);
+                final ByteArrayOutputStream json = new ByteArrayOutputStream(limit * ROW_SIZE_ESTIMATE);
+                try (final ResultSet rs = ps.executeQuery();
+                     final JsonGenerator gen = JSON_FACTORY.createGenerator(json)) {
+                    gen.setRootValueSeparator(null);
+                    int size = 0;
+                    long lastSeq = afterSeq;
+                    while (rs.next()) {
+                        lastSeq = writeRow(gen, rs);
+                        size++;
+                    }
+                    gen.flush();
+                    return new Page(json, size, lastSeq);
+                }
+            } catch (SQLException | IOException e) {
+                LOGGER.error("Transfer history read failed after sequence number {}", afterSeq, e);
+                throw new GenericException("Transfer history read failed after sequence number " + afterSeq, e);
+            }
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+
+    private static void setParameters(final @NotNull PreparedStatement ps, final @NotNull Transfer transfer)
+            throws SQLException {
+        ps.setString(1, transfer.getSourceAccountId());
+        ps.setString(2, transfer.getTargetAccountId());
+        ps.setLong(3, transfer.getAmount());
+        ps.setString(4, transfer.getIdempotencyKey());
+    }
+
+    /**
+     * @return sequence number of the written transfer
+     */
+    private static long writeRow(final @NotNull JsonGenerator gen, final @NotNull ResultSet rs)
+            throws SQLException, IOException {
+        final long seq = rs.getLong("SEQ");
+        gen.writeStartObject();
+        gen.writeNumberField("seq", seq);
+        gen.writeStringField("sourceAccountId", rs.getString("SOURCE_ACCOUNT_ID"));
+        gen.writeStringField("targetAccountId", rs.getString("TARGET_ACCOUNT_ID"));
+        gen.writeFieldName("amount");
+        gen.writeNumber(Money.toPlainString(rs.getLong("AMOUNT")));
+        final String idempotencyKey = rs.getString("IDEMPOTENCY_KEY");
+        if (idempotencyKey != null) {
+            gen.writeStringField("idempotencyKey", idempotencyKey);
+        }
+        gen.writeStringField("appliedAt", rs.getTimestamp("APPLIED_AT").toInstant().toString());
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+        return seq;
+    }
+
+    /**
+     * Transfers read by a single query as newline delimited JSON
+     */
+    static final class Page {
+        private final ByteArrayOutputStream json;
+        private final int size;
+        private final long lastSeq;
+
+        Page(final @NotNull ByteArrayOutputStream json, final int size, final long lastSeq) {
+            this.json = json;
+            this.size = size;
+            this.lastSeq = lastSeq;
+        }
+
+        /**
+         * @param out output to write transfers to, not closed by this method
+         * @throws IOException if output failed
+         */
+        void writeTo(final @NotNull OutputStream out) throws IOException {
+            json.writeTo(out);
+        }
+
+        /**
+         * @return number of transfers in the page
+         */
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * @return sequence number of the last transfer in the page, or the one the page is read after if it's empty
+         */
+        long getLastSeq() {
+            return lastSeq;
+        }
+    }
+}
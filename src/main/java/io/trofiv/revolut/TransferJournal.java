@@ -0,0 +1,248 @@
+package io.trofiv.revolut;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file journal of applied transfers split into numbered segments.
+ * Every record holds absolute account amounts after the transfer, so replaying the journal
+ * on top of any older accounts state is idempotent. Not thread safe, should be appended by a single writer
+ */
+final class TransferJournal implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+
+    private long segment;
+    private long sequence;
+    private FileChannel channel;
+    private DataOutputStream out;
+
+    /**
+     * Opens a new segment after the latest existing one in the specified directory
+     *
+     * @param directory    directory to keep segments in
+     * @param fsync        whether to force written records to the storage device on flush
+     * @param lastSequence last sequence number written to the existing segments
+     * @throws IOException if segment can't be created
+     */
+    TransferJournal(final @NotNull Path directory, final boolean fsync, final long lastSequence) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.sequence = lastSequence;
+        Files.createDirectories(directory);
+        final List<Path> segments = listSegments(directory);
+        segment = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+        openSegment();
+    }
+
+    /**
+     * Buffers a record of the applied transfer, record becomes durable after {@link #flush()}
+     *
+     * @return sequence number assigned to the record
+     * @throws IOException if record can't be written
+     */
+    long append(
+            final @NotNull String sourceAccountId,
+            final long sourceAccountAmount,
+            final @NotNull String targetAccountId,
+            final long targetAccountAmount)
+            throws IOException {
+        payload.reset();
+        payloadOut.writeLong(sequence + 1);
+        payloadOut.writeInt(2);
+        payloadOut.writeUTF(sourceAccountId);
+        payloadOut.writeLong(sourceAccountAmount);
+        payloadOut.writeUTF(targetAccountId);
+        payloadOut.writeLong(targetAccountAmount);
+        return writeRecord();
+    }
+
+    /**
+     * Buffers a single record of all amounts changed by a batch of transfers, so the batch is either
+     * replayed completely or not replayed at all. Record becomes durable after {@link #flush()}
+     *
+     * @param amounts changed account amounts in {@link Money} minor units by account id
+     * @return sequence number assigned to the record
+     * @throws IOException if record can't be written
+     */
+    long append(final @NotNull Map<String, Long> amounts) throws IOException {
+        payload.reset();
+        payloadOut.writeLong(sequence + 1);
+        payloadOut.writeInt(amounts.size());
+        for (final Map.Entry<String, Long> entry : amounts.entrySet()) {
+            payloadOut.writeUTF(entry.getKey());
+            payloadOut.writeLong(entry.getValue());
+        }
+        return writeRecord();
+    }
+
+    private long writeRecord() throws IOException {
+        crc.reset();
+        crc.update(payload.toByteArray(), 0, payload.size());
+        out.writeInt(payload.size());
+        out.writeInt((int) crc.getValue());
+        payload.writeTo(out);
+        sequence++;
+        return sequence;
+    }
+
+    /**
+     * Writes all buffered records to the current segment
+     *
+     * @throws IOException if records can't be written
+     */
+    void flush() throws IOException {
+        out.flush();
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Closes current segment and starts a new one
+     *
+     * @return number of the closed segment
+     * @throws IOException if segment can't be closed or created
+     */
+    long rotate() throws IOException {
+        close();
+        final long closed = segment;
+        segment++;
+        openSegment();
+        return closed;
+    }
+
+    /**
+     * Removes closed segments which are already reflected in the database
+     *
+     * @param lastSegment number of the latest segment to remove
+     */
+    void deleteSegmentsUpTo(final long lastSegment) {
+        try {
+            for (final Path path : listSegments(directory)) {
+                if (segmentNumber(path) <= lastSegment) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Journal segments cleanup failed up to {}", lastSegment, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replays all segments of the specified directory in order. Replay of a segment stops
+     * at the first incomplete or corrupted record which could be left by a crash during write
+     *
+     * @param directory directory with segments
+     * @param amounts   account amounts in {@link Money} minor units to apply records to
+     * @return sequence number of the last replayed record, 0 if there are no records
+     * @throws IOException if segments can't be read
+     */
+    static long replay(final @NotNull Path directory, final @NotNull Map<String, Long> amounts)
+            throws IOException {
+        long lastSequence = 0;
+        if (!Files.isDirectory(directory)) {
+            return lastSequence;
+        }
+        final CRC32 crc = new CRC32();
+        for (final Path path : listSegments(directory)) {
+            int records = 0;
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    final byte[] record;
+                    final int checksum;
+                    try {
+                        final int length = in.readInt();
+                        checksum = in.readInt();
+                        if (length <= 0 || length > MAX_RECORD_SIZE) {
+                            LOGGER.warn("Journal segment {} has corrupted record after {} records", path, records);
+                            break;
+                        }
+                        record = new byte[length];
+                        in.readFully(record);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(record, 0, record.length);
+                    if ((int) crc.getValue() != checksum) {
+                        LOGGER.warn("Journal segment {} has corrupted record after {} records", path, records);
+                        break;
+                    }
+                    final DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                    lastSequence = recordIn.readLong();
+                    final int count = recordIn.readInt();
+                    for (int i = 0; i < count; i++) {
+                        amounts.put(recordIn.readUTF(), recordIn.readLong());
+                    }
+                    records++;
+                }
+            }
+            LOGGER.info("Replayed {} records from journal segment {}", records, path);
+        }
+        return lastSequence;
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE));
+    }
+
+    private static @NotNull List<Path> listSegments(final @NotNull Path directory) throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (final DirectoryStream<Path> stream =
+                     Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long segmentNumber(final @NotNull Path segment) {
+        final String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
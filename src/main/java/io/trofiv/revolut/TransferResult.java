@@ -0,0 +1,104 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.base.MoreObjects;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.BAD_REQUEST;
+import static org.eclipse.jetty.http.HttpStatus.Code.FAILED_DEPENDENCY;
+import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
+import static org.eclipse.jetty.http.HttpStatus.Code.INTERNAL_SERVER_ERROR;
+import static org.eclipse.jetty.http.HttpStatus.Code.NOT_FOUND;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+
+/**
+ * Outcome of a single transfer of a batch, uses the same status codes as a single transfer request
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class TransferResult {
+    private static final TransferResult SUCCESS = new TransferResult(NO_CONTENT.getCode(), null);
+    private static final TransferResult ROLLED_BACK = new TransferResult(FAILED_DEPENDENCY.getCode(),
+            new GenericException("Transfer is rolled back since another transfer of the batch failed"));
+
+    private final int status;
+    private final @Nullable GenericException cause;
+
+    private TransferResult(final int status, final @Nullable GenericException cause) {
+        this.status = status;
+        this.cause = cause;
+    }
+
+    static @NotNull TransferResult success() {
+        return SUCCESS;
+    }
+
+    /**
+     * @param e business exception the transfer failed with
+     * @return result with the status code matching to the exception
+     */
+    static @NotNull TransferResult failure(final @NotNull GenericException e) {
+        final int status;
+        if (e instanceof InvalidRequestException) {
+            status = BAD_REQUEST.getCode();
+        } else if (e instanceof NoSuchAccountException) {
+            status = NOT_FOUND.getCode();
+        } else if (e instanceof NotEnoughMoneyException) {
+            status = FORBIDDEN.getCode();
+        } else {
+            status = INTERNAL_SERVER_ERROR.getCode();
+        }
+        return new TransferResult(status, e);
+    }
+
+    /**
+     * Replaces successful results with rolled back ones, used when batch is applied atomically and failed
+     *
+     * @param results results of the batch transfers
+     * @return results having failed transfers unchanged and all other transfers rolled back
+     */
+    static @NotNull List<TransferResult> rollback(final @NotNull List<TransferResult> results) {
+        final List<TransferResult> rolledBack = new ArrayList<>(results.size());
+        for (final TransferResult result : results) {
+            rolledBack.add(result.isSuccessful() ? ROLLED_BACK : result);
+        }
+        return rolledBack;
+    }
+
+    @JsonGetter
+    public int getStatus() {
+        return status;
+    }
+
+    @JsonGetter
+    public @Nullable String getError() {
+        return cause == null ? null : cause.getMessage();
+    }
+
+    /**
+     * @return exception the transfer failed with, {@code null} for successful transfers
+     */
+    @Nullable GenericException getCause() {
+        return cause;
+    }
+
+    boolean isSuccessful() {
+        return status == NO_CONTENT.getCode();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("status", status)
+                .add("error", getError())
+                .toString();
+    }
+}
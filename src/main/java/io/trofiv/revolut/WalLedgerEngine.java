@@ -0,0 +1,333 @@
+package io.trofiv.revolut;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+
+/**
+ * Ledger engine which keeps account amounts in memory and doesn't touch the database after startup.
+ * Every applied transfer is appended to {@link MappedTransferLog} before amounts are changed, amounts are
+ * written to a {@link BalanceCheckpoint} every {@code ledger.walCheckpointIntervalMs} and on shutdown, after that
+ * log segments reflected in the checkpoint are removed. On startup amounts are loaded from the database,
+ * overridden by the checkpoint and brought up to date by the log records written after it.
+ * Accounts are indexed once on startup, amounts are kept in a primitive array, so transfers don't allocate
+ * boxed amounts and reads don't take locks. Transfers are applied one at a time. Neither idempotency keys nor
+ * transfers history are supported, since the database is not touched after startup
+ */
+@Singleton
+public class WalLedgerEngine implements LedgerEngine {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass().getSimpleName());
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+    private static final boolean READ_ONLY = true;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final long checkpointIntervalMs;
+    private final Object lock = new Object();
+    private final ScheduledExecutorService checkpointExecutor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("ledger-checkpoint").setDaemon(true).build());
+
+    private Map<String, Integer> slots;
+    private String[] ids;
+    private AtomicLongArray amounts;
+    private MappedTransferLog log;
+    private long checkpointSequence;
+    private volatile GenericException failure;
+
+    /**
+     * @param segmentSize size of a log segment file in bytes
+     * @param fsync       whether to force every appended record to the storage device before transfer
+     *                    is acknowledged, otherwise records survive process crashes but not OS crashes
+     */
+    @Inject
+    public WalLedgerEngine(
+            @Named("ledger.walDirectory") final String directory,
+            @Named("ledger.walSegmentBytes") final int segmentSize,
+            @Named("ledger.walFsync") final boolean fsync,
+            @Named("ledger.walCheckpointIntervalMs") final long checkpointIntervalMs) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.checkpointIntervalMs = checkpointIntervalMs;
+    }
+
+    /**
+     * Recovers accounts from the database, checkpoint and log and starts periodic checkpoints
+     */
+    @Override
+    public void start() throws GenericException {
+        final long start = System.nanoTime();
+        final Map<String, Long> recovered = executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, READ_ONLY);
+            return Account.getAllAccounts(conn);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        final int[] replayed = new int[1];
+        try {
+            checkpointSequence = BalanceCheckpoint.read(directory.resolve(CHECKPOINT_FILE), recovered);
+            index(recovered);
+            final long lastSequence = MappedTransferLog.replay(directory, checkpointSequence,
+                    (sequence, sourceAccountId, targetAccountId, amount) -> {
+                        replay(sequence, sourceAccountId, targetAccountId, amount);
+                        replayed[0]++;
+                    });
+            log = new MappedTransferLog(directory, segmentSize, lastSequence);
+        } catch (IOException e) {
+            LOGGER.error("Ledger recovery failed at {}", directory, e);
+            throw new GenericException("Ledger recovery failed at " + directory, e);
+        }
+        LOGGER.info("Recovered {} accounts from checkpoint at sequence number {} and {} log records in {} ms",
+                ids.length, checkpointSequence, replayed[0],
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        checkpointExecutor.scheduleWithFixedDelay(this::checkpointQuietly,
+                checkpointIntervalMs, checkpointIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the final checkpoint
+     */
+    @Override
+    public void stop() {
+        checkpointExecutor.shutdown();
+        try {
+            checkpointExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointQuietly();
+        synchronized (lock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Log records don't hold idempotency keys, so retried transfers can't be deduplicated after restart
+     */
+    @Override
+    public boolean supportsIdempotencyKeys() {
+        return false;
+    }
+
+    /**
+     * Transfers are appended to the log only, it's removed once reflected in a checkpoint
+     */
+    @Override
+    public boolean recordsHistory() {
+        return false;
+    }
+
+    @Override
+    public @NotNull Account getAccount(final @NotNull String id) throws GenericException {
+        return new Account(id, amounts.get(getSlot(id)));
+    }
+
+    @Override
+    public void getAccounts(final @NotNull Collection<String> ids, final @NotNull Account.AmountConsumer consumer)
+            throws GenericException {
+        try {
+            for (final String id : ids) {
+                final Integer slot = slots.get(id);
+                if (slot != null) {
+                    consumer.accept(id, amounts.get(slot));
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Accounts write failed for {} accounts", ids.size(), e);
+            throw new GenericException("Accounts write failed for " + ids.size() + " accounts", e);
+        }
+    }
+
+    @Override
+    public void transfer(final @NotNull Transfer transfer) throws GenericException {
+        transfer.validate();
+        synchronized (lock) {
+            checkAvailable();
+            final int source = getSlot(transfer.getSourceAccountId());
+            final int target = getSlot(transfer.getTargetAccountId());
+            final long creditedSourceAccountAmount = transfer.debit(amounts.get(source));
+            final long debitedTargetAccountAmount = transfer.credit(amounts.get(target));
+            try {
+                log.append(transfer);
+                if (fsync) {
+                    log.force();
+                }
+            } catch (IOException e) {
+                throw fail(new GenericException("Log append failed for " + transfer, e));
+            }
+            amounts.set(source, creditedSourceAccountAmount);
+            amounts.set(target, debitedTargetAccountAmount);
+        }
+    }
+
+    /**
+     * Applies the batch as a whole, records of its applied transfers are replayed all or none
+     */
+    @Override
+    public @NotNull List<TransferResult> transfer(final @NotNull TransferBatch batch) throws GenericException {
+        synchronized (lock) {
+            checkAvailable();
+            final Map<String, Long> current = new HashMap<>();
+            for (final String id : batch.getAccountIds()) {
+                final Integer slot = slots.get(id);
+                if (slot != null) {
+                    current.put(id, amounts.get(slot));
+                }
+            }
+            final Map<String, Long> changed = new HashMap<>();
+            final List<TransferResult> results = batch.apply(current, changed);
+            if (changed.isEmpty()) {
+                return results;
+            }
+            final List<Transfer> transfers = batch.getTransfers();
+            final List<Transfer> applied = new ArrayList<>(transfers.size());
+            for (int i = 0; i < transfers.size(); i++) {
+                if (results.get(i).isSuccessful()) {
+                    applied.add(transfers.get(i));
+                }
+            }
+            try {
+                log.append(applied);
+                if (fsync) {
+                    log.force();
+                }
+            } catch (IOException e) {
+                throw fail(new GenericException("Log append failed for " + batch, e));
+            }
+            for (final Map.Entry<String, Long> entry : changed.entrySet()) {
+                amounts.set(slots.get(entry.getKey()), entry.getValue());
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Writes amounts to a new checkpoint and removes log segments reflected in it. Log is rotated while
+     * transfers are blocked, so the checkpoint reflects all records of the closed segments and none of the
+     * following ones, the checkpoint itself is written while transfers are applied
+     *
+     * @throws GenericException if checkpoint can't be written, log segments are kept in this case
+     */
+    synchronized void checkpoint() throws GenericException {
+        final long sequence;
+        final long closedSegment;
+        final long[] snapshot = new long[ids.length];
+        synchronized (lock) {
+            sequence = log.getSequence();
+            if (sequence == checkpointSequence) {
+                return;
+            }
+            try {
+                closedSegment = log.rotate();
+            } catch (IOException e) {
+                throw fail(new GenericException("Log rotation failed", e));
+            }
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = amounts.get(i);
+            }
+        }
+        try {
+            BalanceCheckpoint.write(directory.resolve(CHECKPOINT_FILE), sequence, ids, snapshot);
+        } catch (IOException e) {
+            LOGGER.error("Checkpoint failed at sequence number {}, will be retried", sequence, e);
+            throw new GenericException("Checkpoint failed at sequence number " + sequence, e);
+        }
+        checkpointSequence = sequence;
+        log.deleteSegmentsUpTo(closedSegment);
+        LOGGER.info("Checkpoint of {} accounts written at sequence number {}", ids.length, sequence);
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (GenericException e) {
+            LOGGER.debug("Checkpoint failed", e);
+        }
+    }
+
+    private void index(final @NotNull Map<String, Long> recovered) {
+        final Map<String, Integer> index = new HashMap<>(recovered.size() * 2);
+        final String[] indexedIds = new String[recovered.size()];
+        final AtomicLongArray indexedAmounts = new AtomicLongArray(recovered.size());
+        int slot = 0;
+        for (final Map.Entry<String, Long> entry : recovered.entrySet()) {
+            index.put(entry.getKey(), slot);
+            indexedIds[slot] = entry.getKey();
+            indexedAmounts.set(slot, entry.getValue());
+            slot++;
+        }
+        slots = index;
+        ids = indexedIds;
+        amounts = indexedAmounts;
+    }
+
+    /**
+     * Applies a logged transfer without checks, since it was checked before it was logged
+     */
+    private void replay(
+            final long sequence,
+            final @NotNull String sourceAccountId,
+            final @NotNull String targetAccountId,
+            final long amount) {
+        final Integer source = slots.get(sourceAccountId);
+        final Integer target = slots.get(targetAccountId);
+        if (source == null || target == null) {
+            LOGGER.warn("Log record {} refers to a removed account, transfer {} -> {} is skipped",
+                    sequence, sourceAccountId, targetAccountId);
+            return;
+        }
+        amounts.addAndGet(source, -amount);
+        amounts.addAndGet(target, amount);
+    }
+
+    private int getSlot(final @NotNull String id) throws NoSuchAccountException {
+        final Integer slot = slots.get(id);
+        if (slot == null) {
+            LOGGER.debug("Account {} does not exist", id);
+            throw new NoSuchAccountException("Account " + id + " does not exist");
+        }
+        return slot;
+    }
+
+    private void checkAvailable() throws GenericException {
+        final GenericException engineFailure = failure;
+        if (engineFailure != null) {
+            throw new GenericException("Ledger is unavailable", engineFailure);
+        }
+    }
+
+    /**
+     * Log state is unknown after a write failure, so engine stops accepting transfers
+     */
+    private @NotNull GenericException fail(final @NotNull GenericException e) {
+        LOGGER.error("Ledger log failure, no more transfers will be accepted", e);
+        failure = e;
+        return e;
+    }
+}
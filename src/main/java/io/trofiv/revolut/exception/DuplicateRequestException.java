@@ -0,0 +1,10 @@
+package io.trofiv.revolut.exception;
+
+/**
+ * Should be raised when a request with an already used idempotency key is applied. Doesn't capture stack trace
+ */
+public class DuplicateRequestException extends GenericException {
+    public DuplicateRequestException(final String message) {
+        super(message, null, true);
+    }
+}
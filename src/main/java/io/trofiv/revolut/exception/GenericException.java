@@ -11,4 +11,16 @@ public class GenericException extends Exception {
     public GenericException(final String message, final Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Creates an exception which doesn't capture stack trace and doesn't record suppressed exceptions.
+     * Business rejections are normal outcomes, so they shouldn't cost a stack walk
+     *
+     * @param message   exception message
+     * @param cause     exception cause, may be {@code null}
+     * @param stackless whether to skip stack trace capture and suppressed exceptions recording
+     */
+    protected GenericException(final String message, final Throwable cause, final boolean stackless) {
+        super(message, cause, !stackless, !stackless);
+    }
 }
@@ -1,14 +1,15 @@
 package io.trofiv.revolut.exception;
 
 /**
- * Should be raised when user request is invalid both in terms of JSON validity and schema validation
+ * Should be raised when user request is invalid both in terms of JSON validity and schema validation.
+ * Doesn't capture stack trace, parsing failures keep their stack trace in the cause
  */
 public class InvalidRequestException extends GenericException {
     public InvalidRequestException(final String message) {
-        super(message);
+        super(message, null, true);
     }
 
     public InvalidRequestException(final String message, final Throwable cause) {
-        super(message, cause);
+        super(message, cause, true);
     }
 }
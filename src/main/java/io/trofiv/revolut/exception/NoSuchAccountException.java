@@ -1,10 +1,10 @@
 package io.trofiv.revolut.exception;
 
 /**
- * Should be raised when user requested operation over account which doesn't exist
+ * Should be raised when user requested operation over account which doesn't exist. Doesn't capture stack trace
  */
 public class NoSuchAccountException extends GenericException {
     public NoSuchAccountException(final String message) {
-        super(message);
+        super(message, null, true);
     }
 }
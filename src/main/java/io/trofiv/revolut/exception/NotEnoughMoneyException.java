@@ -1,10 +1,11 @@
 package io.trofiv.revolut.exception;
 
 /**
- * Should be raised when user requested credit-related operation over account which doesn't have sufficient funds
+ * Should be raised when user requested credit-related operation over account which doesn't have sufficient funds.
+ * Doesn't capture stack trace
  */
 public class NotEnoughMoneyException extends GenericException {
     public NotEnoughMoneyException(final String message) {
-        super(message);
+        super(message, null, true);
     }
 }
@@ -0,0 +1,11 @@
+package io.trofiv.revolut.exception;
+
+/**
+ * Should be raised when a request is rejected since the server is saturated and the request can be retried later.
+ * Doesn't capture stack trace
+ */
+public class TooManyRequestsException extends GenericException {
+    public TooManyRequestsException(final String message) {
+        super(message, null, true);
+    }
+}
@@ -58,9 +58,8 @@ abstract class AbstractIntegrationTest {
 
     private static final CloseableHttpClient HTTP_CLIENT = HttpClientBuilder.create()
             .disableAutomaticRetries().setMaxConnTotal(100).build();
-    private static final CloseableHttpAsyncClient HTTP_ASYNC_CLIENT = HttpAsyncClientBuilder.create()
-            .setMaxConnTotal(5000).build();
 
+    private static CloseableHttpAsyncClient httpAsyncClient;
     private static Application application;
     private static String applicationUrl;
 
@@ -72,20 +71,22 @@ abstract class AbstractIntegrationTest {
             setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
                     CommitBehaviour.DO_AUTO_COMMIT, false);
             try (final CallableStatement statement = conn.prepareCall("DROP TABLE IF EXISTS ACCOUNTS; " +
-                    "CREATE TABLE ACCOUNTS(ID VARCHAR(255) NOT NULL PRIMARY KEY, AMOUNT VARCHAR(255)); " +
-                    "INSERT INTO ACCOUNTS SELECT * FROM (" +
-                    "SELECT '1', '100.0' UNION " +
-                    "SELECT '2', '200.0' UNION " +
-                    "SELECT '3', 'invalid_bigdecimal') X;")) {
+                    "CREATE TABLE ACCOUNTS(ID VARCHAR(255) NOT NULL PRIMARY KEY, AMOUNT BIGINT, " +
+                    "VERSION BIGINT DEFAULT 0 NOT NULL); " +
+                    "INSERT INTO ACCOUNTS(ID, AMOUNT) SELECT * FROM (" +
+                    "SELECT '1', 10000 UNION " +
+                    "SELECT '2', 20000 UNION " +
+                    "SELECT '3', NULL) X;")) {
                 statement.execute();
             }
             //noinspection ReturnOfNull
             return null;
         }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        AccountCache.invalidateAll();
     }
 
     @BeforeAll
-    static void setUp() {
+    static void setUp() throws GenericException {
         final Injector injector = Guice.createInjector(new TestModule());
         application = injector.getInstance(Application.class);
         applicationUrl = "http://localhost:" + application.getPort();
@@ -103,14 +104,16 @@ abstract class AbstractIntegrationTest {
                 return false;
             }
         });
-        HTTP_ASYNC_CLIENT.start();
+        httpAsyncClient = HttpAsyncClientBuilder.create().setMaxConnTotal(5000).build();
+        httpAsyncClient.start();
     }
 
     @AfterAll
     static void tearDown() throws IOException {
         //noinspection StaticVariableUsedBeforeInitialization
         application.stop();
-        HTTP_ASYNC_CLIENT.close();
+        //noinspection StaticVariableUsedBeforeInitialization
+        httpAsyncClient.close();
     }
 
     @SuppressWarnings("SuspiciousGetterSetter")
@@ -128,6 +131,15 @@ abstract class AbstractIntegrationTest {
         }
     }
 
+    static ResponseEntity<String> syncTextCall(final HttpUriRequest request) throws IOException {
+        try (final CloseableHttpResponse response = HTTP_CLIENT.execute(request)) {
+            final HttpEntity entity = response.getEntity();
+            return new ResponseEntity<>(response.getStatusLine().getStatusCode(), entity == null
+                    ? null
+                    : IOUtils.toString(entity.getContent(), StandardCharsets.UTF_8));
+        }
+    }
+
     static @NotNull <T> ResponseEntity<T> parseResponse(
             final Class<T> clazz, final HttpResponse response) throws IOException {
         final HttpEntity entity = response.getEntity();
@@ -145,7 +157,8 @@ abstract class AbstractIntegrationTest {
 
     @SuppressWarnings("WeakerAccess")
     static Future<HttpResponse> asyncCall(final HttpUriRequest request) {
-        return HTTP_ASYNC_CLIENT.execute(request, null);
+        //noinspection StaticVariableUsedBeforeInitialization
+        return httpAsyncClient.execute(request, null);
     }
 
     static ResponseEntity<ResponseError> makeTransfer(
@@ -189,7 +202,7 @@ abstract class AbstractIntegrationTest {
         final Account account = result.getContent();
         assertThat(account, not(equalTo(null)));
         assertThat(account.getId(), equalTo(id));
-        assertThat(account.getAmount(), comparesEqualTo(amount));
+        assertThat(Money.toBigDecimal(account.getAmount()), comparesEqualTo(amount));
     }
 
     static class ResponseEntity<T> {
@@ -0,0 +1,69 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.Account.VersionedAmount;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class AccountCacheTest extends AbstractIntegrationTest {
+
+    @Test
+    @Tag("EndToEnd")
+    void testRepeatedReadsAreServedFromCache() throws Exception {
+        final Map<?, ?> before = getCacheStats();
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("1", new BigDecimal("100"));
+        final Map<?, ?> after = getCacheStats();
+        assertThat(after.get("enabled"), equalTo(true));
+        assertThat(getCount(after, "misses") - getCount(before, "misses"), equalTo(1L));
+        assertThat(getCount(after, "hits") - getCount(before, "hits"), equalTo(2L));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testCommittedTransferIsVisibleInCache() throws Exception {
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("2", new BigDecimal("200"));
+        assertThat(makeTransfer("2", "1", "0.01").getStatusCode(), equalTo(NO_CONTENT.getCode()));
+        final Map<?, ?> before = getCacheStats();
+        assertAccount("1", new BigDecimal("100.01"));
+        assertAccount("2", new BigDecimal("199.99"));
+        assertThat(getCount(getCacheStats(), "misses"), equalTo(getCount(before, "misses")));
+    }
+
+    @Test
+    void testAmountLoadedBeforeCommitDoesNotOverwriteCommittedOne() throws Exception {
+        final Account account = AccountCache.get("late", id -> {
+            // transfer is committed while the account is being loaded
+            AccountCache.writeThrough(Collections.singleton(id), committed -> {
+                committed.put(id, new VersionedAmount(500, 3));
+                //noinspection ReturnOfNull
+                return null;
+            });
+            return new VersionedAmount(100, 2);
+        });
+        assertThat(account.getAmount(), equalTo(500L));
+        assertThat(AccountCache.get("late", id -> new VersionedAmount(100, 2)).getAmount(), equalTo(500L));
+    }
+
+    private static Map<?, ?> getCacheStats() throws IOException {
+        final ResponseEntity<Map> result = syncCall(new HttpGet(getAppUrl() + "/admin/cache"), Map.class);
+        assertThat(result.getStatusCode(), equalTo(OK.getCode()));
+        return result.getContent();
+    }
+
+    private static long getCount(final Map<?, ?> stats, final String name) {
+        return ((Number) stats.get(name)).longValue();
+    }
+}
@@ -0,0 +1,57 @@
+package io.trofiv.revolut;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class AccountSnapshotsTest extends AbstractIntegrationTest {
+    private static final String SNAPSHOT_FILE = "accounts.snapshot";
+
+    @Test
+    @Tag("Integration")
+    void testCacheIsWarmedUpFromSnapshot(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve(SNAPSHOT_FILE);
+        final AccountSnapshots snapshots = new AccountSnapshots(file.toString(), 0);
+        snapshots.write();
+        final Map<String, Long> amounts = new HashMap<>();
+        BalanceCheckpoint.read(file, amounts);
+        // account 3 has broken amount and isn't snapshotted
+        assertThat(amounts.size(), equalTo(2));
+        assertThat(amounts.get("1"), equalTo(10000L));
+        AccountCache.invalidateAll();
+        new AccountSnapshots(file.toString(), 0).load();
+        assertThat(AccountCache.getSize(), equalTo(2L));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testOutdatedSnapshotIsSkipped(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve(SNAPSHOT_FILE);
+        new AccountSnapshots(file.toString(), 0).write();
+        new Transfer("2", "1", 100).makeTransfer();
+        AccountCache.invalidateAll();
+        new AccountSnapshots(file.toString(), 0).load();
+        assertThat(AccountCache.getSize(), equalTo(0L));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testCorruptedSnapshotIsSkipped(@TempDir final Path directory) throws Exception {
+        final Path file = directory.resolve(SNAPSHOT_FILE);
+        new AccountSnapshots(file.toString(), 0).write();
+        final byte[] content = Files.readAllBytes(file);
+        content[content.length / 2] ^= 1;
+        Files.write(file, content);
+        AccountCache.invalidateAll();
+        new AccountSnapshots(file.toString(), 0).load();
+        assertThat(AccountCache.getSize(), equalTo(0L));
+    }
+}
@@ -1,23 +1,34 @@
 package io.trofiv.revolut;
 
+import com.google.common.collect.ImmutableMap;
 import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
 import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
 import io.trofiv.revolut.exception.NoSuchAccountException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
 import java.math.BigDecimal;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static io.trofiv.revolut.Account.updateAccountAmountById;
 import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
 import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
 import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static org.eclipse.jetty.http.HttpStatus.Code.BAD_REQUEST;
 import static org.eclipse.jetty.http.HttpStatus.Code.INTERNAL_SERVER_ERROR;
 import static org.eclipse.jetty.http.HttpStatus.Code.NOT_FOUND;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.not;
@@ -41,7 +52,7 @@ class AccountTest extends AbstractIntegrationTest {
         assertThat(result.getStatusCode(), equalTo(INTERNAL_SERVER_ERROR.getCode()));
         final ResponseError error = result.getContent();
         assertThat(error, not(equalTo(null)));
-        assertThat(error.getError(), equalTo("Table has invalid BigDecimal value for id 3: invalid_bigdecimal"));
+        assertThat(error.getError(), equalTo("Table has invalid amount value for id 3: null"));
         assertThat(error.getFrames(), not(equalTo(null)));
         assertThat(error.getFrames().isEmpty(), equalTo(false));
     }
@@ -65,7 +76,7 @@ class AccountTest extends AbstractIntegrationTest {
         executeWithConnection(conn -> {
             setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
                     CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
-            updateAccountAmountById(conn, "1", newAmount);
+            updateAccountAmountById(conn, "1", 0);
             //noinspection ReturnOfNull
             return null;
         }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT);
@@ -80,11 +91,65 @@ class AccountTest extends AbstractIntegrationTest {
                 executeWithConnection(conn -> {
                     setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
                             CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
-                    updateAccountAmountById(conn, "inexistent", new BigDecimal("500"));
+                    updateAccountAmountById(conn, "inexistent", 50000);
                     //noinspection ReturnOfNull
                     return null;
                 }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
         assertAccount("1", new BigDecimal("100"));
         assertAccount("2", new BigDecimal("200"));
     }
+
+    @Test
+    @Tag("EndToEnd")
+    void testQueryAccounts() throws Exception {
+        final ResponseEntity<Account[]> result = syncCall(
+                postJson("/accounts/query", "[\"2\", \"1\", \"inexistent\", \"2\"]"), Account[].class);
+        assertThat(result.getStatusCode(), equalTo(OK.getCode()));
+        final Map<String, Long> amounts = new HashMap<>();
+        //noinspection ConstantConditions
+        for (final Account account : result.getContent()) {
+            amounts.put(account.getId(), account.getAmount());
+        }
+        assertThat(amounts, equalTo(ImmutableMap.of("1", 10000L, "2", 20000L)));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testQueryAccountsWithBrokenStoredAmount() throws Exception {
+        final ResponseEntity<ResponseError> result = syncCall(
+                postJson("/accounts/query", "[\"1\", \"3\"]"), ResponseError.class);
+        assertThat(result.getStatusCode(), equalTo(INTERNAL_SERVER_ERROR.getCode()));
+        assertThat(syncTextCall(postJson("/accounts/query", "{\"ids\": 1}")).getStatusCode(),
+                equalTo(BAD_REQUEST.getCode()));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testQueryAccountsInChunks() throws Exception {
+        final int count = 1000;
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, false);
+            try (final Statement statement = conn.createStatement()) {
+                statement.execute("INSERT INTO ACCOUNTS(ID, AMOUNT) SELECT 'bulk-' || X, X FROM SYSTEM_RANGE(1, "
+                        + count + ")");
+            }
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        final Set<String> ids = new LinkedHashSet<>();
+        for (int i = 1; i <= count + 1; i++) {
+            ids.add("bulk-" + i);
+        }
+        final Map<String, Long> amounts = new HashMap<>();
+        Account.getAccountsByIds(ids, amounts::put);
+        assertThat(amounts.size(), equalTo(count));
+        assertThat(amounts.get("bulk-" + count), equalTo((long) count));
+    }
+
+    private static HttpPost postJson(final String path, final String body) {
+        final HttpPost request = new HttpPost(getAppUrl() + path);
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return request;
+    }
 }
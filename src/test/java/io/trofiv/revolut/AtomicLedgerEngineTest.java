@@ -0,0 +1,35 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AtomicLedgerEngineTest extends AbstractIntegrationTest {
+    private final LedgerEngine engine = new AtomicLedgerEngine();
+
+    @Test
+    @Tag("Integration")
+    void testFailuresAreResolvedAndRolledBack() throws Exception {
+        assertAccount("1", new BigDecimal("100"));
+        final NotEnoughMoneyException notEnoughMoney = assertThrows(NotEnoughMoneyException.class,
+                () -> engine.transfer(new Transfer("1", "2", 1_000_000)));
+        assertThat(notEnoughMoney.getMessage(),
+                equalTo("Credited account has insufficient funds for credit 10000.00: 100.00"));
+        // debit of account 1 is applied before the credit of the missing account fails
+        assertThrows(NoSuchAccountException.class, () -> engine.transfer(new Transfer("1", "4", 100)));
+        final GenericException broken = assertThrows(GenericException.class,
+                () -> engine.transfer(new Transfer("1", "3", 100)));
+        assertThat(broken.getMessage(), equalTo("Table has invalid amount value for id 3: null"));
+        engine.transfer(new Transfer("2", "1", 1));
+        assertAccount("1", new BigDecimal("100.01"));
+        assertAccount("2", new BigDecimal("199.99"));
+    }
+}
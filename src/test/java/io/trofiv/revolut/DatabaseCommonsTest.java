@@ -0,0 +1,85 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseCommonsTest extends AbstractIntegrationTest {
+
+    @Test
+    @Tag("Integration")
+    void testStatementsAndPolicyAreReusedByConnection() throws Exception {
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_REPEATABLE_READ,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+            final Account account = Account.getAccountById("1", conn);
+            final long prepared = Metrics.STATEMENTS_PREPARED.sum();
+            final long policyChanges = Metrics.POLICY_CHANGES.sum();
+            setTransactionPolicyForConnection(conn, TRANSACTION_REPEATABLE_READ,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+            assertThat(Account.getAccountById("1", conn).getAmount(), equalTo(account.getAmount()));
+            assertThat(Metrics.STATEMENTS_PREPARED.sum(), equalTo(prepared));
+            assertThat(Metrics.POLICY_CHANGES.sum(), equalTo(policyChanges));
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+            assertThat(Metrics.POLICY_CHANGES.sum(), not(equalTo(policyChanges)));
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+
+    @Test
+    @Tag("Integration")
+    void testUnfinishedTransactionIsRolledBackOnRelease() throws Exception {
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+            Account.updateAccountAmountById(conn, "1", 0);
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        final long amount = executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, true);
+            return Account.getAccountById("1", conn).getAmount();
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        assertThat(amount, equalTo(10000L));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testReleaseFailureDoesNotReplaceFunctionFailure() {
+        assertThrows(NotEnoughMoneyException.class, () -> executeWithClosedConnection(
+                new NotEnoughMoneyException("Not enough money")));
+        final GenericException e = assertThrows(GenericException.class, () -> executeWithClosedConnection(
+                new GenericException("Failure")));
+        assertThat(e.getMessage(), equalTo("Failure"));
+        assertThat(e.getSuppressed().length, equalTo(1));
+        assertThat(e.getSuppressed()[0], instanceOf(SQLException.class));
+    }
+
+    private static void executeWithClosedConnection(final GenericException failure) throws GenericException {
+        executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+            // connection can't be rolled back on release anymore
+            conn.close();
+            throw failure;
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT);
+    }
+}
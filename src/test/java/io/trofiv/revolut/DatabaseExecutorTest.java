@@ -0,0 +1,67 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseExecutorTest {
+    @Test
+    @Tag("Integration")
+    void testTasksAreRejectedWhenQueueIsFull() throws Exception {
+        assertTasksAreRejectedWhenQueueIsFull(new DatabaseExecutor(1, 1, "platform"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testVirtualTasksAreRejectedWhenQueueIsFull() throws Exception {
+        if (isVirtualThreadsSupported()) {
+            assertTasksAreRejectedWhenQueueIsFull(new DatabaseExecutor(1, 1, "virtual"));
+        } else {
+            assertThrows(IllegalArgumentException.class, () -> new DatabaseExecutor(1, 1, "virtual"));
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testUnknownModeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new DatabaseExecutor(1, 1, "green"));
+    }
+
+    private static void assertTasksAreRejectedWhenQueueIsFull(final DatabaseExecutor executor) throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final CompletableFuture<Integer> running = executor.supply(() -> {
+                started.countDown();
+                release.await();
+                return 1;
+            });
+            started.await();
+            final CompletableFuture<Integer> queued = executor.supply(() -> 2);
+            assertThrows(TooManyRequestsException.class, () -> executor.supply(() -> 3));
+            release.countDown();
+            assertThat(running.get(10, TimeUnit.SECONDS), equalTo(1));
+            assertThat(queued.get(10, TimeUnit.SECONDS), equalTo(2));
+        } finally {
+            release.countDown();
+            executor.stop();
+        }
+    }
+
+    private static boolean isVirtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.trofiv.revolut;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DatabaseProfileTest {
+    @Test
+    @Tag("Integration")
+    void testProfileSettingsAreAppendedToUrl() {
+        assertThat(DatabaseProfile.fromName("durable").buildUrl("jdbc:h2:./accounts"),
+                equalTo("jdbc:h2:./accounts;MV_STORE=TRUE;WRITE_DELAY=0;LOCK_TIMEOUT=10000;CACHE_SIZE=65536"));
+        assertThat(DatabaseProfile.fromName("low-latency").buildUrl("jdbc:h2:file:/var/lib/ledger/accounts"),
+                equalTo("jdbc:h2:file:/var/lib/ledger/accounts;MV_STORE=TRUE;WRITE_DELAY=500;LOCK_TIMEOUT=1000;"
+                        + "CACHE_SIZE=262144"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testInMemoryProfileIsNamedAfterDatabaseLocation() {
+        final DatabaseProfile profile = DatabaseProfile.fromName("in-memory-test");
+        assertThat(profile.buildUrl("jdbc:h2:./build/accounts"),
+                equalTo("jdbc:h2:mem:accounts;MV_STORE=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"));
+        assertThat(profile.buildUrl("jdbc:h2:file:accounts"),
+                equalTo("jdbc:h2:mem:accounts;MV_STORE=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"));
+        assertThat(profile.buildUrl("jdbc:h2:mem:ledger"),
+                equalTo("jdbc:h2:mem:ledger;MV_STORE=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testUnknownProfileAndUrlAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> DatabaseProfile.fromName("fast"));
+        assertThrows(IllegalArgumentException.class,
+                () -> DatabaseProfile.DURABLE.buildUrl("jdbc:postgresql://localhost/accounts"));
+    }
+}
@@ -0,0 +1,37 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.exception.GenericException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GroupCommitLedgerEngineTest extends AbstractIntegrationTest {
+    private static final long WINDOW_MICROS = 50_000;
+    private static final int MAX_SIZE = 64;
+
+    @Test
+    @Tag("Integration")
+    void testBrokenAccountFailsOnlyItsTransfers() throws Exception {
+        final GroupCommitLedgerEngine engine = new GroupCommitLedgerEngine(WINDOW_MICROS, MAX_SIZE);
+        engine.start();
+        try {
+            final CompletableFuture<Void> valid = engine.transferAsync(new Transfer("2", "1", 100));
+            final CompletableFuture<Void> broken = engine.transferAsync(new Transfer("3", "1", 100));
+            valid.get();
+            final ExecutionException e = assertThrows(ExecutionException.class, broken::get);
+            assertThat(e.getCause().getClass(), equalTo(GenericException.class));
+            assertThat(e.getCause().getMessage(), equalTo("Table has invalid amount value for id 3: null"));
+        } finally {
+            engine.stop();
+        }
+        assertAccount("1", new BigDecimal("101"));
+        assertAccount("2", new BigDecimal("199"));
+    }
+}
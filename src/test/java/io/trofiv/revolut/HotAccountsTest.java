@@ -0,0 +1,146 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.TooManyRequestsException;
+import org.apache.http.client.methods.HttpGet;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_REPEATABLE_READ;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HotAccountsTest extends AbstractIntegrationTest {
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long LOCK_HOLD_MS = 100;
+
+    @AfterEach
+    void restoreConfiguration() {
+        HotAccounts.configure(HotAccounts.DETECT_MODE, 64, 100_000, 1000, 1000);
+    }
+
+    @Test
+    @Tag("Integration")
+    void testAccountReceivingMostTransfersIsHot() {
+        HotAccounts.configure(HotAccounts.DETECT_MODE, 4, 10_000, 0, WINDOW_MS);
+        for (int i = 0; i < 20; i++) {
+            HotAccounts.recordContention("client-" + i, "merchant", TimeUnit.MILLISECONDS.toNanos(1), i % 2 == 0);
+        }
+        HotAccounts.rollOver();
+        assertThat(HotAccounts.isHot("merchant"), equalTo(true));
+        assertThat(HotAccounts.isHot("client-19"), equalTo(false));
+        final List<Map<String, Object>> top = HotAccounts.getTopAccounts();
+        assertThat(top.size(), equalTo(4));
+        assertThat(top.get(0).get("id"), equalTo("merchant"));
+        assertThat(top.get(0).get("contentionMicros"), equalTo(10_000L));
+        assertThat(top.get(0).get("failedRetries"), equalTo(5L));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testAccountWaitingForRowLockIsHot() throws Exception {
+        HotAccounts.configure(HotAccounts.DETECT_MODE, 4, 10_000, 1000, WINDOW_MS);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final ExecutorService lockHolder = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Object> lock = lockHolder.submit(() -> executeWithConnection(conn -> {
+                setTransactionPolicyForConnection(conn, TRANSACTION_REPEATABLE_READ,
+                        CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+                Account.getAccountById("1", conn, true);
+                locked.countDown();
+                Thread.sleep(LOCK_HOLD_MS);
+                //noinspection ReturnOfNull
+                return null;
+            }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+            locked.await();
+            new Transfer("1", "2", 1000).makeTransfer();
+            lock.get();
+        } finally {
+            lockHolder.shutdown();
+        }
+        HotAccounts.rollOver();
+        assertThat(HotAccounts.isHot("1"), equalTo(true));
+        assertThat(HotAccounts.isHot("2"), equalTo(true));
+        assertAccount("1", new BigDecimal("90"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testLaneSubmitsTransfersWithoutWaitingForThemToBeApplied() throws Exception {
+        final List<Transfer> submitted = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Void>> pending = new CopyOnWriteArrayList<>();
+        final LedgerEngine engine = new JdbcLedgerEngine() {
+            @Override
+            public @NotNull CompletableFuture<Void> transferAsync(final @NotNull Transfer transfer) {
+                final CompletableFuture<Void> applied = new CompletableFuture<>();
+                submitted.add(transfer);
+                pending.add(applied);
+                return applied;
+            }
+        };
+        final HotAccountLane lane = new HotAccountLane(3);
+        try {
+            final List<Transfer> transfers = new ArrayList<>();
+            final List<CompletableFuture<Void>> results = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                final Transfer transfer = new Transfer("1", "2", i);
+                transfers.add(transfer);
+                results.add(lane.transfer(engine, transfer));
+            }
+            await().atMost(5, SECONDS).until(() -> submitted.size() == 3);
+            assertThat(submitted, equalTo(transfers));
+            assertThrows(TooManyRequestsException.class, () -> lane.transfer(engine, new Transfer("1", "2", 4)));
+            pending.forEach(applied -> applied.complete(null));
+            for (final CompletableFuture<Void> result : results) {
+                result.get(5, SECONDS);
+            }
+            lane.transfer(engine, new Transfer("1", "2", 4));
+        } finally {
+            lane.stop();
+        }
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testTransfersOfHotAccountsAreAppliedByLane() throws Exception {
+        HotAccounts.configure(HotAccounts.LANE_MODE, 4, 10_000, 0, WINDOW_MS);
+        HotAccounts.recordContention("1", "2", TimeUnit.MILLISECONDS.toNanos(20), false);
+        HotAccounts.rollOver();
+        assertThat(HotAccounts.isLaneMode(), equalTo(true));
+        assertThat(HotAccounts.isHot("1"), equalTo(true));
+        assertThat(HotAccounts.isHot("3"), equalTo(false));
+
+        assertThat(makeTransfer("1", "2", "10").getStatusCode(), equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("90"));
+        assertAccount("2", new BigDecimal("210"));
+
+        final ResponseEntity<Map> result = syncCall(new HttpGet(getAppUrl() + "/admin/hot-accounts"), Map.class);
+        assertThat(result.getStatusCode(), equalTo(OK.getCode()));
+        //noinspection ConstantConditions
+        assertThat(result.getContent().get("mode"), equalTo("lane"));
+        final Map<?, ?> hottest = (Map<?, ?>) ((List<?>) result.getContent().get("accounts")).get(0);
+        assertThat(hottest.get("hot"), equalTo(true));
+    }
+}
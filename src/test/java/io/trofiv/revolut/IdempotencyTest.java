@@ -0,0 +1,157 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.DuplicateRequestException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.CONFLICT;
+import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyTest extends AbstractIntegrationTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Test
+    @Tag("EndToEnd")
+    void testRetriedTransferIsAppliedOnce() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        assertThat(syncCall(transferRequest(key), ResponseError.class).getStatusCode(),
+                equalTo(NO_CONTENT.getCode()));
+        assertThat(syncCall(transferRequest(key), ResponseError.class).getStatusCode(),
+                equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("110"));
+        assertAccount("2", new BigDecimal("190"));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testConcurrentRetriesAreAppliedOnce() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final List<Future<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(asyncCall(transferRequest(key)));
+        }
+        for (final Future<HttpResponse> future : futures) {
+            assertThat(future.get().getStatusLine().getStatusCode(),
+                    anyOf(equalTo(NO_CONTENT.getCode()), equalTo(CONFLICT.getCode())));
+        }
+        assertAccount("1", new BigDecimal("110"));
+        assertAccount("2", new BigDecimal("190"));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testRetriedRejectedTransferIsReplayed() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        assertThat(syncCall(transferRequest(key, "1000"), ResponseError.class).getStatusCode(),
+                equalTo(FORBIDDEN.getCode()));
+        final HttpResponse replayed = asyncCall(transferRequest(key, "10")).get();
+        assertThat(replayed.getStatusLine().getStatusCode(), equalTo(FORBIDDEN.getCode()));
+        assertThat(replayed.getFirstHeader("Idempotent-Replayed").getValue(), equalTo("true"));
+        assertThat(new IdempotencyStore(60_000, 1000).load(key), equalTo(FORBIDDEN.getCode()));
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("2", new BigDecimal("200"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testBatchRecordsOutcomesOfItsTransfers() throws Exception {
+        final String applied = UUID.randomUUID().toString();
+        final String rejected = UUID.randomUUID().toString();
+        final IdempotencyStore store = new IdempotencyStore(60_000, 1000);
+        new TransferBatch(Arrays.asList(
+                new Transfer("2", "1", 1000).withIdempotencyKey(applied),
+                new Transfer("1", "2", 1_000_000).withIdempotencyKey(rejected)), BatchMode.PER_ITEM).execute();
+        assertThat(store.load(applied), equalTo(NO_CONTENT.getCode()));
+        assertThat(store.load(rejected), equalTo(FORBIDDEN.getCode()));
+        final String rolledBack = UUID.randomUUID().toString();
+        new TransferBatch(Arrays.asList(
+                new Transfer("2", "1", 1000).withIdempotencyKey(rolledBack),
+                new Transfer("1", "2", 1_000_000)), BatchMode.ALL_OR_NOTHING).execute();
+        assertThat(store.load(rolledBack), equalTo(IdempotencyStore.MISSING));
+        assertAccount("1", new BigDecimal("110"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testRejectionRecordedByGroupCommitIsKept() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final IdempotencyStore store = new IdempotencyStore(60_000, 1000);
+        final GroupCommitLedgerEngine engine = new GroupCommitLedgerEngine(50_000, 64);
+        engine.start();
+        try {
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> engine.transferAsync(new Transfer("1", "2", 1_000_000).withIdempotencyKey(key)).get());
+            assertThat(IdempotencyStore.getRejectionStatus(e.getCause()), equalTo(FORBIDDEN.getCode()));
+        } finally {
+            engine.stop();
+        }
+        assertThat(store.storeRejection(key, FORBIDDEN.getCode()), equalTo(FORBIDDEN.getCode()));
+        assertThat(store.load(key), equalTo(FORBIDDEN.getCode()));
+        final String applied = UUID.randomUUID().toString();
+        new Transfer("2", "1", 1000).withIdempotencyKey(applied).makeTransfer();
+        assertThat(store.storeRejection(applied, FORBIDDEN.getCode()), equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("110"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testKeyIsRecordedWithTransfer() throws Exception {
+        final String key = UUID.randomUUID().toString();
+        final IdempotencyStore store = new IdempotencyStore(60_000, 1000);
+        final Transfer transfer = new Transfer("2", "1", 1000).withIdempotencyKey(key);
+        assertThat(store.load(key), equalTo(IdempotencyStore.MISSING));
+        transfer.makeTransfer();
+        assertThrows(DuplicateRequestException.class, transfer::makeTransfer);
+        assertThrows(DuplicateRequestException.class, transfer::makeAtomicTransfer);
+        assertThat(store.load(key), equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("110"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testIndexIsBounded() {
+        final IdempotencyStore store = new IdempotencyStore(60_000, 16);
+        store.put("first", NO_CONTENT.getCode());
+        assertThat(store.getStatus("first"), equalTo(NO_CONTENT.getCode()));
+        for (int i = 0; i < 1000; i++) {
+            store.put(Integer.toString(i), NO_CONTENT.getCode());
+        }
+        assertThat(store.getStatus("first"), equalTo(IdempotencyStore.MISSING));
+        assertThat(store.getStatus("999"), equalTo(NO_CONTENT.getCode()));
+    }
+
+    private static HttpPost transferRequest(final String key) throws IOException {
+        return transferRequest(key, "10");
+    }
+
+    private static HttpPost transferRequest(final String key, final String amount) throws IOException {
+        final HttpPost request = new HttpPost(getAppUrl() + "/transfers");
+        request.setHeader("Idempotency-Key", key);
+        request.setEntity(new StringEntity(JSON.writeValueAsString(ImmutableMap.of(
+                "sourceAccountId", "2",
+                "targetAccountId", "1",
+                "amount", amount)), ContentType.APPLICATION_JSON));
+        return request;
+    }
+}
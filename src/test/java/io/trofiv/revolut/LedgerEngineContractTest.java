@@ -0,0 +1,88 @@
+package io.trofiv.revolut;
+
+import com.pivovarit.function.ThrowingSupplier;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Behaviour every ledger engine applying transfers in the database shares, engine specific behaviour
+ * is tested by the engine tests
+ */
+class LedgerEngineContractTest extends AbstractIntegrationTest {
+    private static final long GROUP_COMMIT_WINDOW_MICROS = 50_000;
+    private static final int GROUP_COMMIT_MAX_SIZE = 64;
+    private static final int SHARDS = 4;
+    private static final int OPTIMISTIC_MAX_ATTEMPTS = 3;
+    private static final long OPTIMISTIC_BACKOFF_MICROS = 100;
+
+    static Stream<Arguments> engines() {
+        return Stream.of(
+                engine("jdbc", JdbcLedgerEngine::new),
+                engine("group-commit", () -> new GroupCommitLedgerEngine(
+                        GROUP_COMMIT_WINDOW_MICROS, GROUP_COMMIT_MAX_SIZE)),
+                engine("sharded", () -> new ShardedLedgerEngine(SHARDS)),
+                engine("sharded into a single shard", () -> new ShardedLedgerEngine(1)),
+                engine("atomic", AtomicLedgerEngine::new),
+                engine("optimistic", () -> new OptimisticLedgerEngine(
+                        OPTIMISTIC_MAX_ATTEMPTS, OPTIMISTIC_BACKOFF_MICROS)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    @Tag("Integration")
+    void testConcurrentTransfersInBothDirections(
+            final String name,
+            final ThrowingSupplier<LedgerEngine, Exception> engineSupplier)
+            throws Exception {
+        final LedgerEngine engine = engineSupplier.get();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        engine.start();
+        try {
+            final List<Future<CompletableFuture<Void>>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                results.add(executor.submit(() -> engine.transferAsync(new Transfer("2", "1", 100))));
+                results.add(executor.submit(() -> engine.transferAsync(new Transfer("1", "2", 50))));
+            }
+            for (final Future<CompletableFuture<Void>> result : results) {
+                result.get().get();
+            }
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> engine.transferAsync(new Transfer("1", "2", 1_000_000)).get());
+            assertThat(e.getCause(), instanceOf(NotEnoughMoneyException.class));
+            e = assertThrows(ExecutionException.class,
+                    () -> engine.transferAsync(new Transfer("3", "1", 100)).get());
+            assertThat(e.getCause().getClass(), equalTo(GenericException.class));
+            assertThat(e.getCause().getMessage(), equalTo("Table has invalid amount value for id 3: null"));
+        } finally {
+            executor.shutdown();
+            engine.stop();
+        }
+        assertAccount("1", new BigDecimal("150"));
+        assertAccount("2", new BigDecimal("150"));
+    }
+
+    private static Arguments engine(
+            final String name,
+            final ThrowingSupplier<LedgerEngine, Exception> engineSupplier) {
+        return Arguments.of(name, engineSupplier);
+    }
+}
@@ -0,0 +1,54 @@
+package io.trofiv.revolut;
+
+import org.apache.http.client.methods.HttpGet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+class MetricsTest extends AbstractIntegrationTest {
+
+    @Test
+    @Tag("EndToEnd")
+    void testRoutesAndDatabaseMetricsAreExposed() throws Exception {
+        assertThat(makeTransfer("2", "1", "1").getStatusCode(), equalTo(NO_CONTENT.getCode()));
+        assertThat(makeTransfer("1", "2", "1000").getStatusCode(), equalTo(FORBIDDEN.getCode()));
+        assertAccount("1", new BigDecimal("101"));
+
+        final ResponseEntity<String> result = syncTextCall(new HttpGet(getAppUrl() + "/metrics"));
+        assertThat(result.getStatusCode(), equalTo(OK.getCode()));
+        final String metrics = result.getContent();
+        assertThat(metrics, containsString(
+                "http_responses_total{method=\"POST\",route=\"/transfers\",status=\"204\"} "));
+        assertThat(metrics, containsString(
+                "http_responses_total{method=\"POST\",route=\"/transfers\",status=\"403\"} "));
+        assertThat(metrics, containsString(
+                "http_request_duration_seconds_bucket{method=\"GET\",route=\"/accounts/:id\",le=\"+Inf\"} "));
+        assertThat(metrics, containsString("# TYPE db_connection_duration_seconds histogram"));
+        assertThat(metrics, containsString("transfer_lock_wait_seconds_count "));
+        assertThat(metrics, containsString("db_rollbacks_total "));
+        assertThat(metrics, containsString("db_pool_acquire_seconds_count "));
+        assertThat(metrics, containsString("db_pool_connections_active "));
+        assertThat(metrics, containsString("db_pool_connections_pending "));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testNonStandardMethodsShareSingleSeries() {
+        for (int i = 0; i < 100; i++) {
+            Metrics.recordRequest("METHOD" + i, "", 404, 1000);
+        }
+        final String metrics = Metrics.scrape();
+        assertThat(metrics, containsString(
+                "http_responses_total{method=\"other\",route=\"unmatched\",status=\"404\"} 100\n"));
+        assertThat(metrics, not(containsString("METHOD")));
+    }
+}
@@ -0,0 +1,89 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.Account.VersionedAmount;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.trofiv.revolut.DatabaseCommons.executeWithConnection;
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class OptimisticLedgerEngineTest extends AbstractIntegrationTest {
+    private static final long BACKOFF_MICROS = 100;
+    private static final long WINDOW_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long LOCK_HOLD_MS = 100;
+
+    @Test
+    @Tag("Integration")
+    void testConflictingTransferFallsBackToAccountLocks() throws Exception {
+        // the concurrent change below bypasses the cache, which would then serve a stale account
+        AccountCache.configure(false, 10000, 60000);
+        final CountDownLatch updated = new CountDownLatch(1);
+        final ExecutorService updater = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Object> update = updater.submit(() -> executeWithConnection(conn -> {
+                setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                        CommitBehaviour.DO_NOT_AUTO_COMMIT, false);
+                Account.updateAccountAmountById(conn, "1", 10000);
+                updated.countDown();
+                Thread.sleep(LOCK_HOLD_MS);
+                //noinspection ReturnOfNull
+                return null;
+            }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT));
+            updated.await();
+            final OptimisticLedgerEngine engine = new OptimisticLedgerEngine(1, BACKOFF_MICROS);
+            final long conflicts = Metrics.OPTIMISTIC_CONFLICTS.sum();
+            final long fallbacks = Metrics.OPTIMISTIC_FALLBACKS.sum();
+            engine.transfer(new Transfer("2", "1", 100));
+            update.get();
+            assertThat(Metrics.OPTIMISTIC_CONFLICTS.sum(), equalTo(conflicts + 1));
+            assertThat(Metrics.OPTIMISTIC_FALLBACKS.sum(), equalTo(fallbacks + 1));
+            assertAccount("1", new BigDecimal("101"));
+            assertAccount("2", new BigDecimal("199"));
+        } finally {
+            updater.shutdown();
+            AccountCache.configure(true, 10000, 60000);
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testStaleVersionIsNotUpdated() throws Exception {
+        final boolean updated = executeWithConnection(conn -> {
+            final VersionedAmount account = Account.getVersionedAmountById(conn, "1");
+            Account.updateAccountAmountById(conn, "1", 1);
+            return Account.updateAccountAmountIfVersion(conn, "1", 2, account.getVersion());
+        }, RollbackBehaviour.DO_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_AUTO_COMMIT);
+        assertThat(updated, equalTo(false));
+        assertAccount("1", new BigDecimal("0.01"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testTransfersOfHotAccountsTakeLocksRightAway() throws Exception {
+        HotAccounts.configure(HotAccounts.DETECT_MODE, 4, 10_000, 0, WINDOW_MS);
+        try {
+            HotAccounts.recordContention("1", "2", TimeUnit.MILLISECONDS.toNanos(20), true);
+            HotAccounts.rollOver();
+            final OptimisticLedgerEngine engine = new OptimisticLedgerEngine(0, BACKOFF_MICROS);
+            final long fallbacks = Metrics.OPTIMISTIC_FALLBACKS.sum();
+            engine.transfer(new Transfer("2", "1", 100));
+            assertThat(Metrics.OPTIMISTIC_FALLBACKS.sum(), equalTo(fallbacks));
+            assertAccount("1", new BigDecimal("101"));
+            assertAccount("2", new BigDecimal("199"));
+        } finally {
+            HotAccounts.configure(HotAccounts.DETECT_MODE, 64, 100_000, 1000, 1000);
+        }
+    }
+}
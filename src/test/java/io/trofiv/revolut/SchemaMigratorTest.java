@@ -0,0 +1,67 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.exception.GenericException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+@SuppressWarnings("SqlNoDataSourceInspection")
+class SchemaMigratorTest extends AbstractIntegrationTest {
+    private static final int CURRENT_VERSION = 6;
+
+    @Test
+    @Tag("Integration")
+    void testEmptyDatabaseIsCreatedOnce() throws Exception {
+        execute("DROP TABLE ACCOUNTS; DROP TABLE SCHEMA_VERSION");
+        assertThat(migrate(), equalTo(CURRENT_VERSION));
+        execute("DELETE FROM ACCOUNTS WHERE ID = '1'");
+        assertThat(migrate(), equalTo(CURRENT_VERSION));
+        assertAccount("2", new BigDecimal("200"));
+        assertThat(countAccounts(), equalTo(1));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testLegacyDatabaseIsMigrated() throws Exception {
+        execute("DROP TABLE ACCOUNTS; DROP TABLE SCHEMA_VERSION; "
+                + "CREATE TABLE ACCOUNTS(ID VARCHAR(255) NOT NULL PRIMARY KEY, AMOUNT VARCHAR(255)); "
+                + "INSERT INTO ACCOUNTS VALUES ('5', '100.5')");
+        assertThat(migrate(), equalTo(CURRENT_VERSION));
+        assertAccount("5", new BigDecimal("100.5"));
+        assertThat(countAccounts(), equalTo(1));
+    }
+
+    private static int migrate() throws GenericException {
+        return DatabaseCommons.executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, false);
+            return SchemaMigrator.migrate(conn);
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+
+    private static int countAccounts() throws GenericException {
+        return DatabaseCommons.executeWithConnection(conn -> Account.getAllAccounts(conn).size(),
+                RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+
+    private static void execute(final String sql) throws GenericException {
+        DatabaseCommons.executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    CommitBehaviour.DO_AUTO_COMMIT, false);
+            try (final Statement statement = conn.createStatement()) {
+                statement.execute(sql);
+            }
+            //noinspection ReturnOfNull
+            return null;
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+}
@@ -0,0 +1,186 @@
+package io.trofiv.revolut;
+
+import com.google.common.collect.ImmutableMap;
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.GenericException;
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NoSuchAccountException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static org.eclipse.jetty.http.HttpStatus.Code.FAILED_DEPENDENCY;
+import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SequencedLedgerEngineTest extends AbstractIntegrationTest {
+    private static final int RING_BUFFER_SIZE = 1024;
+    private static final long SNAPSHOT_INTERVAL_MS = 60_000;
+
+    @Test
+    @Tag("Integration")
+    void testTransfersAreSnapshotToDatabaseOnStop(@TempDir final Path journal) throws Exception {
+        final SequencedLedgerEngine engine = startEngine(journal);
+        engine.transfer(new Transfer("2", "1", 5001));
+        engine.transfer(new Transfer("1", "2", 1));
+        assertThat(engine.getAccount("1").getAmount(), equalTo(15000L));
+        assertThat(engine.getAccount("2").getAmount(), equalTo(15000L));
+        assertAccount("1", new BigDecimal("100"));
+        engine.stop();
+        assertAccount("1", new BigDecimal("150"));
+        assertAccount("2", new BigDecimal("150"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testRejectedTransfersAreNotApplied(@TempDir final Path journal) throws Exception {
+        final SequencedLedgerEngine engine = startEngine(journal);
+        try {
+            assertThrows(NotEnoughMoneyException.class, () -> engine.transfer(new Transfer("1", "2", 10001)));
+            assertThrows(NoSuchAccountException.class, () -> engine.transfer(new Transfer("1", "inexistent", 100)));
+            assertThat(engine.getAccount("1").getAmount(), equalTo(10000L));
+            assertThat(engine.getAccount("2").getAmount(), equalTo(20000L));
+        } finally {
+            engine.stop();
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testAllOrNothingBatchIsNotApplied(@TempDir final Path journal) throws Exception {
+        final SequencedLedgerEngine engine = startEngine(journal);
+        try {
+            final List<TransferResult> results = engine.transfer(new TransferBatch(Arrays.asList(
+                    new Transfer("2", "1", 5000),
+                    new Transfer("1", "2", 20000)), BatchMode.ALL_OR_NOTHING));
+            assertThat(results.get(0).getStatus(), equalTo(FAILED_DEPENDENCY.getCode()));
+            assertThat(results.get(1).getStatus(), equalTo(FORBIDDEN.getCode()));
+            assertThat(engine.getAccount("1").getAmount(), equalTo(10000L));
+            assertThat(engine.getAccount("2").getAmount(), equalTo(20000L));
+        } finally {
+            engine.stop();
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testStateIsRecoveredFromJournal(@TempDir final Path journal) throws Exception {
+        final SequencedLedgerEngine engine = startEngine(journal);
+        engine.transfer(new Transfer("2", "1", 5001));
+        engine.transfer(new TransferBatch(Arrays.asList(
+                new Transfer("1", "2", 100),
+                new Transfer("1", "inexistent", 100),
+                new Transfer("2", "1", 50)), BatchMode.PER_ITEM));
+        // engine is abandoned without the final snapshot as if the process crashed
+        final SequencedLedgerEngine recovered = startEngine(journal);
+        try {
+            assertThat(recovered.getAccount("1").getAmount(), equalTo(14951L));
+            assertThat(recovered.getAccount("2").getAmount(), equalTo(15049L));
+            assertAccount("1", new BigDecimal("100"));
+        } finally {
+            recovered.stop();
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testRetryAfterRestartIsNotApplied(@TempDir final Path journal) throws Exception {
+        final Transfer transfer = new Transfer("2", "1", 100).withIdempotencyKey("retried-after-restart");
+        final SequencedLedgerEngine engine = startEngine(journal);
+        assertThat(engine.supportsIdempotencyKeys(), equalTo(false));
+        assertThrows(InvalidRequestException.class, () -> engine.transfer(transfer));
+        final ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transferAsync(transfer).get());
+        assertThat(e.getCause().getClass(), equalTo(InvalidRequestException.class));
+        engine.stop();
+        final SequencedLedgerEngine restarted = startEngine(journal);
+        try {
+            assertThrows(InvalidRequestException.class, () -> restarted.transfer(transfer));
+            assertThat(restarted.getAccount("1").getAmount(), equalTo(10000L));
+            assertThat(restarted.getAccount("2").getAmount(), equalTo(20000L));
+        } finally {
+            restarted.stop();
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testCorruptedRecordIsNotReplayed(@TempDir final Path directory) throws Exception {
+        final TransferJournal journal = new TransferJournal(directory, false, 0);
+        journal.append("1", 100, "2", 200);
+        journal.append("1", 90, "2", 210);
+        journal.append("1", 80, "2", 220);
+        journal.close();
+        final Path segment;
+        try (final Stream<Path> files = Files.list(directory)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // last byte of the second record target account amount
+            final int recordSize = 4 + 4 + 8 + 4 + 3 + 8 + 3 + 8;
+            channel.write(ByteBuffer.wrap(new byte[]{1}), recordSize * 2 - 1);
+        }
+        final Map<String, Long> amounts = new HashMap<>();
+        assertThat(TransferJournal.replay(directory, amounts), equalTo(1L));
+        assertThat(amounts, equalTo(ImmutableMap.of("1", 100L, "2", 200L)));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testUnexpectedTransferFailureDoesNotStopSequencer(@TempDir final Path journal) throws Exception {
+        DatabaseCommons.executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    DatabaseCommons.CommitBehaviour.DO_AUTO_COMMIT, false);
+            conn.prepareStatement("INSERT INTO ACCOUNTS(ID, AMOUNT) VALUES ('rich', " + Long.MAX_VALUE + ")")
+                    .execute();
+            //noinspection ReturnOfNull
+            return null;
+        }, DatabaseCommons.RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION,
+                DatabaseCommons.CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        final SequencedLedgerEngine engine = startEngine(journal);
+        try {
+            // target amount overflows
+            assertThrows(GenericException.class, () -> engine.transfer(new Transfer("1", "rich", 100)));
+            engine.transfer(new Transfer("1", "2", 100));
+            assertThat(engine.getAccount("1").getAmount(), equalTo(9900L));
+            assertThat(engine.getAccount("rich").getAmount(), equalTo(Long.MAX_VALUE));
+        } finally {
+            engine.stop();
+        }
+    }
+
+    private static SequencedLedgerEngine startEngine(final Path journal) throws Exception {
+        final SequencedLedgerEngine engine = new SequencedLedgerEngine(
+                RING_BUFFER_SIZE, journal.toString(), false, SNAPSHOT_INTERVAL_MS);
+        // account 3 has broken amount and can't be loaded by the engine
+        DatabaseCommons.executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    DatabaseCommons.CommitBehaviour.DO_AUTO_COMMIT, false);
+            conn.prepareStatement("DELETE FROM ACCOUNTS WHERE ID = '3'").execute();
+            //noinspection ReturnOfNull
+            return null;
+        }, DatabaseCommons.RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION,
+                DatabaseCommons.CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        engine.start();
+        return engine;
+    }
+}
@@ -0,0 +1,55 @@
+package io.trofiv.revolut;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedLedgerEngineTest extends AbstractIntegrationTest {
+    private static final int SHARDS = 4;
+
+    @Test
+    @Tag("Integration")
+    void testHandoffsAreAppliedInSubmissionOrder() throws Exception {
+        final ShardedLedgerEngine engine = new ShardedLedgerEngine(SHARDS);
+        assertThat(engine.getShard("1"), not(equalTo(engine.getShard("2"))));
+        engine.start();
+        try {
+            // every transfer moves the whole balance of its source account, so it succeeds only if
+            // all transfers submitted before it are already applied
+            final List<CompletableFuture<Void>> results = new ArrayList<>();
+            results.add(engine.transferAsync(new Transfer("1", "2", 10000)));
+            for (int i = 0; i < 50; i++) {
+                results.add(engine.transferAsync(new Transfer("2", "1", 30000)));
+                results.add(engine.transferAsync(new Transfer("1", "2", 30000)));
+            }
+            results.add(engine.transferAsync(new Transfer("2", "1", 30000)));
+            for (final CompletableFuture<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            engine.stop();
+        }
+        assertAccount("1", new BigDecimal("300"));
+        assertAccount("2", new BigDecimal("0"));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testStoppedEngineRejectsTransfers() {
+        final ShardedLedgerEngine engine = new ShardedLedgerEngine(SHARDS);
+        engine.stop();
+        final ExecutionException e = assertThrows(ExecutionException.class,
+                () -> engine.transferAsync(new Transfer("2", "1", 100)).get());
+        assertThat(e.getCause().getMessage(), equalTo("Ledger is stopped"));
+    }
+}
@@ -22,6 +22,9 @@ public class TestModule extends AbstractModule {
             LOGGER.error("Can't initialize application properties", ex);
         }
         Names.bindProperties(binder(), properties);
+        bind(LedgerEngine.class).to(MainModule.getLedgerEngineClass(properties.getProperty("ledger.engine", "jdbc")));
         requestStaticInjection(DatabaseCommons.class);
+        requestStaticInjection(AccountCache.class);
+        requestStaticInjection(HotAccounts.class);
     }
 }
@@ -0,0 +1,93 @@
+package io.trofiv.revolut;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.BAD_REQUEST;
+import static org.eclipse.jetty.http.HttpStatus.Code.FAILED_DEPENDENCY;
+import static org.eclipse.jetty.http.HttpStatus.Code.FORBIDDEN;
+import static org.eclipse.jetty.http.HttpStatus.Code.NOT_FOUND;
+import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+class TransferBatchTest extends AbstractIntegrationTest {
+    @Test
+    @Tag("EndToEnd")
+    void testPerItemBatchAppliesSuccessfulTransfers() throws Exception {
+        final List<Map<String, Object>> results = makeBatch("per-item", "[" +
+                "{\"sourceAccountId\": \"2\", \"targetAccountId\": \"1\", \"amount\": \"50.01\"}," +
+                "{\"sourceAccountId\": \"1\", \"targetAccountId\": \"2\", \"amount\": \"1000\"}," +
+                "{\"sourceAccountId\": \"1\", \"targetAccountId\": \"inexistent\", \"amount\": \"1\"}," +
+                "{\"sourceAccountId\": \"1\", \"targetAccountId\": \"2\", \"amount\": \"0.01\"}]");
+        assertThat(results, hasSize(4));
+        assertThat(results.get(0).get("status"), equalTo(NO_CONTENT.getCode()));
+        assertThat(results.get(1).get("status"), equalTo(FORBIDDEN.getCode()));
+        assertThat(results.get(2).get("status"), equalTo(NOT_FOUND.getCode()));
+        assertThat(results.get(3).get("status"), equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("150"));
+        assertAccount("2", new BigDecimal("150"));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testAllOrNothingBatchIsRolledBack() throws Exception {
+        final List<Map<String, Object>> results = makeBatch("all-or-nothing", "[" +
+                "{\"sourceAccountId\": \"2\", \"targetAccountId\": \"1\", \"amount\": \"50\"}," +
+                "{\"sourceAccountId\": \"1\", \"targetAccountId\": \"1\", \"amount\": \"1\"}]");
+        assertThat(results, hasSize(2));
+        assertThat(results.get(0).get("status"), equalTo(FAILED_DEPENDENCY.getCode()));
+        assertThat(results.get(1).get("status"), equalTo(BAD_REQUEST.getCode()));
+        assertThat(results.get(1).get("error"), equalTo("Source and target accounts can't be the same!"));
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("2", new BigDecimal("200"));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testNewlineDelimitedBatch() throws Exception {
+        final List<Map<String, Object>> results = makeBatch(null,
+                "{\"sourceAccountId\": \"2\", \"targetAccountId\": \"1\", \"amount\": \"10\"}\n" +
+                "{\"sourceAccountId\": \"2\", \"targetAccountId\": \"1\", \"amount\": \"20\"}\n");
+        assertThat(results, hasSize(2));
+        assertThat(results.get(0).get("status"), equalTo(NO_CONTENT.getCode()));
+        assertThat(results.get(1).get("status"), equalTo(NO_CONTENT.getCode()));
+        assertAccount("1", new BigDecimal("130"));
+        assertAccount("2", new BigDecimal("170"));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testMalformedBatch() throws Exception {
+        final ResponseEntity<ResponseError> result = postBatch(null, "[{\"sourceAccountId\": ", ResponseError.class);
+        assertThat(result.getStatusCode(), equalTo(BAD_REQUEST.getCode()));
+        assertAccount("1", new BigDecimal("100"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> makeBatch(final String mode, final String body) throws IOException {
+        final ResponseEntity<List> result = postBatch(mode, body, List.class);
+        assertThat(result.getStatusCode(), equalTo(OK.getCode()));
+        return (List<Map<String, Object>>) result.getContent();
+    }
+
+    private static <T> ResponseEntity<T> postBatch(
+            final String mode,
+            final String body,
+            final Class<T> clazz)
+            throws IOException {
+        final HttpPost request = new HttpPost(getAppUrl() + "/transfers/batch" + (mode == null ? "" : "?mode=" + mode));
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return syncCall(request, clazz);
+    }
+}
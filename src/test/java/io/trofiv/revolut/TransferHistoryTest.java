@@ -0,0 +1,98 @@
+package io.trofiv.revolut;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.trofiv.revolut.DatabaseCommons.CommitBehaviour;
+import io.trofiv.revolut.DatabaseCommons.RollbackBehaviour;
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.GenericException;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.jetty.http.HttpStatus.Code.BAD_REQUEST;
+import static org.eclipse.jetty.http.HttpStatus.Code.OK;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+
+@SuppressWarnings("SqlNoDataSourceInspection")
+class TransferHistoryTest extends AbstractIntegrationTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    @Test
+    @Tag("EndToEnd")
+    void testCommittedTransfersAreExportedInOrder() throws Exception {
+        final long head = getHead();
+        makeTransfer("2", "1", "10.5");
+        makeTransfer("1", "2", "1000");
+        makeTransfer("1", "2", "0.01");
+        final List<Map<String, Object>> transfers = export("?afterSeq=" + head);
+        assertThat(transfers, hasSize(2));
+        assertThat(transfers.get(0).get("sourceAccountId"), equalTo("2"));
+        assertThat(transfers.get(0).get("targetAccountId"), equalTo("1"));
+        assertThat(transfers.get(0).get("amount"), equalTo(10.5));
+        assertThat(transfers.get(0).get("appliedAt"), not(equalTo(null)));
+        assertThat(transfers.get(1).get("amount"), equalTo(0.01));
+        assertThat(((Number) transfers.get(1).get("seq")).longValue(),
+                equalTo(((Number) transfers.get(0).get("seq")).longValue() + 1));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testHistoryIsPagedBySequenceNumber() throws Exception {
+        final long head = getHead();
+        new TransferBatch(Arrays.asList(
+                new Transfer("2", "1", 100),
+                new Transfer("1", "inexistent", 100),
+                new Transfer("2", "1", 200),
+                new Transfer("2", "1", 300)), BatchMode.PER_ITEM).execute();
+        final List<Map<String, Object>> first = export("?limit=2&afterSeq=" + head);
+        assertThat(first, hasSize(2));
+        assertThat(first.get(1).get("amount"), equalTo(2.0));
+        final List<Map<String, Object>> second = export("?limit=2&afterSeq=" + first.get(1).get("seq"));
+        assertThat(second, hasSize(1));
+        assertThat(second.get(0).get("amount"), equalTo(3.0));
+    }
+
+    @Test
+    @Tag("EndToEnd")
+    void testInvalidPageIsRejected() throws Exception {
+        assertThat(syncTextCall(new HttpGet(getAppUrl() + "/transfers?afterSeq=x")).getStatusCode(),
+                equalTo(BAD_REQUEST.getCode()));
+        assertThat(syncTextCall(new HttpGet(getAppUrl() + "/transfers?limit=0")).getStatusCode(),
+                equalTo(BAD_REQUEST.getCode()));
+    }
+
+    private static List<Map<String, Object>> export(final String query) throws IOException {
+        final ResponseEntity<String> response = syncTextCall(new HttpGet(getAppUrl() + "/transfers" + query));
+        assertThat(response.getStatusCode(), equalTo(OK.getCode()));
+        final List<Map<String, Object>> transfers = new ArrayList<>();
+        //noinspection ConstantConditions
+        for (final String line : response.getContent().split("\n")) {
+            if (!line.isEmpty()) {
+                //noinspection unchecked
+                transfers.add(JSON.readValue(line, Map.class));
+            }
+        }
+        return transfers;
+    }
+
+    private static long getHead() throws GenericException {
+        return DatabaseCommons.executeWithConnection(conn -> {
+            try (final Statement statement = conn.createStatement();
+                 final ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(SEQ), 0) FROM TRANSFERS")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }, RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION, CommitBehaviour.DO_NOT_AUTO_COMMIT);
+    }
+}
@@ -1,5 +1,7 @@
 package io.trofiv.revolut;
 
+import io.trofiv.revolut.exception.InvalidRequestException;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
 import org.apache.http.HttpResponse;
 import org.hamcrest.CoreMatchers;
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
@@ -21,6 +23,7 @@ import static org.eclipse.jetty.http.HttpStatus.Code.NO_CONTENT;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 @TestMethodOrder(OrderAnnotation.class)
@@ -56,7 +59,7 @@ class TransferTest extends AbstractIntegrationTest {
         assertThat(result.getStatusCode(), equalTo(BAD_REQUEST.getCode()));
         final ResponseError error = result.getContent();
         assertThat(error, not(CoreMatchers.equalTo(null)));
-        assertThat(error.getError(), CoreMatchers.equalTo("Amount must be positive! Got: 0"));
+        assertThat(error.getError(), CoreMatchers.equalTo("Amount must be positive! Got: 0.00"));
         assertThat(error.getFrames(), not(CoreMatchers.equalTo(null)));
         assertThat(error.getFrames().isEmpty(), CoreMatchers.equalTo(false));
         assertAccount("1", new BigDecimal("100"));
@@ -70,7 +73,7 @@ class TransferTest extends AbstractIntegrationTest {
         assertThat(result.getStatusCode(), equalTo(BAD_REQUEST.getCode()));
         final ResponseError error = result.getContent();
         assertThat(error, not(CoreMatchers.equalTo(null)));
-        assertThat(error.getError(), CoreMatchers.equalTo("Amount must be positive! Got: -1"));
+        assertThat(error.getError(), CoreMatchers.equalTo("Amount must be positive! Got: -1.00"));
         assertThat(error.getFrames(), not(CoreMatchers.equalTo(null)));
         assertThat(error.getFrames().isEmpty(), CoreMatchers.equalTo(false));
         assertAccount("1", new BigDecimal("100"));
@@ -91,6 +94,18 @@ class TransferTest extends AbstractIntegrationTest {
         assertAccount("2", new BigDecimal("200"));
     }
 
+    @Test
+    @Tag("EndToEnd")
+    void testTransferAmountWithExcessiveScale() throws Exception {
+        final ResponseEntity<ResponseError> result = makeTransfer("1", "2", "0.001");
+        assertThat(result.getStatusCode(), equalTo(BAD_REQUEST.getCode()));
+        final ResponseError error = result.getContent();
+        assertThat(error, not(CoreMatchers.equalTo(null)));
+        assertThat(error.getError(), CoreMatchers.equalTo("Invalid request!"));
+        assertAccount("1", new BigDecimal("100"));
+        assertAccount("2", new BigDecimal("200"));
+    }
+
     @Test
     @Tag("EndToEnd")
     void testTransferInvalidStoredAmount() throws Exception {
@@ -99,7 +114,7 @@ class TransferTest extends AbstractIntegrationTest {
         final ResponseError error = result.getContent();
         assertThat(error, not(CoreMatchers.equalTo(null)));
         assertThat(error.getError(), CoreMatchers.equalTo(
-                "Table has invalid BigDecimal value for id 3: invalid_bigdecimal"));
+                "Table has invalid amount value for id 3: null"));
         assertThat(error.getFrames(), not(CoreMatchers.equalTo(null)));
         assertThat(error.getFrames().isEmpty(), CoreMatchers.equalTo(false));
         assertAccount("1", new BigDecimal("100"));
@@ -113,12 +128,23 @@ class TransferTest extends AbstractIntegrationTest {
         final ResponseError error = result.getContent();
         assertThat(error, not(CoreMatchers.equalTo(null)));
         assertThat(error.getError(), CoreMatchers.equalTo(
-                "Credited account has insufficient funds for credit 10000: 100.0"));
+                "Credited account has insufficient funds for credit 10000.00: 100.00"));
         assertThat(error.getFrames(), CoreMatchers.equalTo(null));
         assertAccount("1", new BigDecimal("100"));
         assertAccount("2", new BigDecimal("200"));
     }
 
+    @Test
+    @Tag("Integration")
+    void testRejectionsDoNotCaptureStackTrace() {
+        final Transfer transfer = new Transfer("1", "1", 1000);
+        final InvalidRequestException invalid = assertThrows(InvalidRequestException.class, transfer::validate);
+        assertThat(invalid.getStackTrace().length, equalTo(0));
+        final NotEnoughMoneyException notEnoughMoney = assertThrows(NotEnoughMoneyException.class,
+                () -> transfer.debit(10));
+        assertThat(notEnoughMoney.getStackTrace().length, equalTo(0));
+    }
+
     @Test
     @Tag("ConcurrentTest")
     void testConcurrentTransfersBetweenTwoAccounts() throws IOException {
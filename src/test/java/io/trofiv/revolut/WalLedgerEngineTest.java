@@ -0,0 +1,111 @@
+package io.trofiv.revolut;
+
+import io.trofiv.revolut.TransferBatch.BatchMode;
+import io.trofiv.revolut.exception.NotEnoughMoneyException;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.trofiv.revolut.DatabaseCommons.setTransactionPolicyForConnection;
+import static java.sql.Connection.TRANSACTION_READ_COMMITTED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class WalLedgerEngineTest extends AbstractIntegrationTest {
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+    private static final long CHECKPOINT_INTERVAL_MS = 60_000;
+
+    @Test
+    @Tag("Integration")
+    void testStateIsRecoveredFromCheckpointAndLog(@TempDir final Path wal) throws Exception {
+        final WalLedgerEngine engine = startEngine(wal);
+        engine.transfer(new Transfer("2", "1", 5001));
+        engine.checkpoint();
+        engine.transfer(new Transfer("1", "2", 1));
+        assertThrows(NotEnoughMoneyException.class, () -> engine.transfer(new Transfer("1", "2", 20000)));
+        engine.transfer(new TransferBatch(Arrays.asList(
+                new Transfer("2", "1", 100),
+                new Transfer("1", "inexistent", 100),
+                new Transfer("1", "2", 50)), BatchMode.PER_ITEM));
+        // engine is abandoned without the final checkpoint as if the process crashed
+        final WalLedgerEngine recovered = startEngine(wal);
+        try {
+            assertThat(recovered.getAccount("1").getAmount(), equalTo(15050L));
+            assertThat(recovered.getAccount("2").getAmount(), equalTo(14950L));
+            assertAccount("1", new BigDecimal("100"));
+        } finally {
+            recovered.stop();
+        }
+    }
+
+    @Test
+    @Tag("Integration")
+    void testCorruptedRecordIsNotReplayed(@TempDir final Path wal) throws Exception {
+        final MappedTransferLog log = new MappedTransferLog(wal, SEGMENT_SIZE, 0);
+        log.append(new Transfer("1", "2", 100));
+        log.append(new Transfer("1", "2", 200));
+        log.append(new Transfer("1", "2", 300));
+        log.close();
+        final Path segment;
+        try (final Stream<Path> files = Files.list(wal)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        try (final FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // last byte of the second record target account id
+            final int recordSize = 8 + 16 + 4 + 2;
+            channel.write(ByteBuffer.wrap(new byte[]{'x'}), recordSize * 2 - 1);
+        }
+        final List<Long> amounts = new ArrayList<>();
+        assertThat(MappedTransferLog.replay(wal, 0,
+                (sequence, sourceAccountId, targetAccountId, amount) -> amounts.add(amount)), equalTo(1L));
+        assertThat(amounts, equalTo(Arrays.asList(100L)));
+    }
+
+    @Test
+    @Tag("Integration")
+    void testLogIsRecoveredAcrossSegments(@TempDir final Path wal) throws Exception {
+        final int records = 100_000;
+        final MappedTransferLog log = new MappedTransferLog(wal, SEGMENT_SIZE, 0);
+        for (int i = 0; i < records; i++) {
+            log.append(new Transfer("1", "2", 1));
+        }
+        log.close();
+        final List<Long> sequences = new ArrayList<>(records);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> MappedTransferLog.replay(wal, 10,
+                (sequence, sourceAccountId, targetAccountId, amount) -> sequences.add(sequence)));
+        assertThat(sequences, hasSize(records - 10));
+        assertThat(sequences.get(0), equalTo(11L));
+    }
+
+    private static WalLedgerEngine startEngine(final Path wal) throws Exception {
+        final WalLedgerEngine engine = new WalLedgerEngine(
+                wal.toString(), SEGMENT_SIZE, false, CHECKPOINT_INTERVAL_MS);
+        // account 3 has broken amount and can't be loaded by the engine
+        DatabaseCommons.executeWithConnection(conn -> {
+            setTransactionPolicyForConnection(conn, TRANSACTION_READ_COMMITTED,
+                    DatabaseCommons.CommitBehaviour.DO_AUTO_COMMIT, false);
+            conn.prepareStatement("DELETE FROM ACCOUNTS WHERE ID = '3'").execute();
+            //noinspection ReturnOfNull
+            return null;
+        }, DatabaseCommons.RollbackBehaviour.DO_NOT_ROLLBACK_ON_EXCEPTION,
+                DatabaseCommons.CommitBehaviour.DO_NOT_AUTO_COMMIT);
+        engine.start();
+        return engine;
+    }
+}